@@ -0,0 +1,28 @@
+package io.github.peterberghuis.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of {@code benchmarks.jar}. Accepts the regular JMH command line, but writes the results as JSON to
+ * {@code jmh-result.json} unless {@code -rf}/{@code -rff} say otherwise, so runs can be diffed and archived by CI.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf")) {
+            arguments.addAll(List.of("-rf", "json"));
+        }
+        if (!arguments.contains("-rff")) {
+            arguments.addAll(List.of("-rff", "jmh-result.json"));
+        }
+        Main.main(arguments.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.peterberghuis.benchmarks;
+
+import io.github.peterberghuis.common.id.IdGenerator;
+import io.github.peterberghuis.common.id.IdGeneratorConfig;
+import io.github.peterberghuis.common.id.IdGeneratorProperties;
+import io.github.peterberghuis.common.id.IdStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of generating one primary key per {@code ids.strategy}, with as many threads as CPUs (see
+ * {@link IdInsertBenchmark} for what the choice does to the database).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class IdGeneratorBenchmark {
+
+    @Param({"UUID_V7", "SHARDED", "RANDOM"})
+    public IdStrategy strategy;
+
+    private IdGenerator idGenerator;
+
+    @Setup
+    public void setUp() {
+        idGenerator = idGenerator(strategy);
+    }
+
+    @Benchmark
+    public UUID next() {
+        return idGenerator.next();
+    }
+
+    static IdGenerator idGenerator(IdStrategy strategy) {
+        IdGeneratorProperties properties = new IdGeneratorProperties();
+        properties.setStrategy(strategy);
+        return new IdGeneratorConfig().idGenerator(properties);
+    }
+}
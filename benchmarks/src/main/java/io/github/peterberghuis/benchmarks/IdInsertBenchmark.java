@@ -0,0 +1,136 @@
+package io.github.peterberghuis.benchmarks;
+
+import io.github.peterberghuis.common.id.IdGenerator;
+import io.github.peterberghuis.common.id.IdStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk registration and refresh-token upserts per ID strategy, against a real database. The scores are rows per
+ * second.
+ * <p>
+ * Needs PostgreSQL or CockroachDB: {@code -Dbenchmark.jdbc.url} (default: the database from {@code compose.yaml}),
+ * {@code -Dbenchmark.jdbc.user} and {@code -Dbenchmark.jdbc.password}. Tables mirroring {@code users} and
+ * {@code refresh_tokens} are recreated in {@code benchmark_schema} per trial. Rows then pile up across iterations,
+ * so later iterations measure a grown index, which is where random keys fall behind.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IdInsertBenchmark {
+
+    static final int BATCH_SIZE = 500;
+    private static final int REFRESH_TOKEN_USERS = 100_000;
+
+    @Param({"UUID_V7", "SHARDED", "RANDOM"})
+    public IdStrategy strategy;
+
+    private Connection connection;
+    private IdGenerator idGenerator;
+    private UUID[] userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("benchmark.jdbc.url",
+                        "jdbc:postgresql://localhost:5432/tanuki-db?reWriteBatchedInserts=true"),
+                System.getProperty("benchmark.jdbc.user", "myuser"),
+                System.getProperty("benchmark.jdbc.password", "secret"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SCHEMA IF NOT EXISTS benchmark_schema");
+            statement.execute("DROP TABLE IF EXISTS benchmark_schema.users, benchmark_schema.refresh_tokens");
+            statement.execute("""
+                    CREATE TABLE benchmark_schema.users (
+                        id UUID PRIMARY KEY,
+                        email VARCHAR(255) NOT NULL UNIQUE,
+                        password_hash VARCHAR(255),
+                        status VARCHAR(50) NOT NULL,
+                        created_at TIMESTAMP NOT NULL
+                    )""");
+            statement.execute("""
+                    CREATE TABLE benchmark_schema.refresh_tokens (
+                        id UUID PRIMARY KEY,
+                        token VARCHAR(512) NOT NULL UNIQUE,
+                        user_id UUID NOT NULL UNIQUE,
+                        expiry_date TIMESTAMP NOT NULL
+                    )""");
+        }
+        connection.setAutoCommit(false);
+
+        idGenerator = IdGeneratorBenchmark.idGenerator(strategy);
+        userIds = new UUID[REFRESH_TOKEN_USERS];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = idGenerator.next();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * One registration batch: a user row each, as {@code AuthService.register} writes them.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void register() throws SQLException {
+        Timestamp now = Timestamp.from(Instant.now());
+        try (PreparedStatement insert = connection.prepareStatement("""
+                INSERT INTO benchmark_schema.users (id, email, password_hash, status, created_at)
+                VALUES (?, ?, ?, 'ACTIVE', ?)""")) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                UUID id = idGenerator.next();
+                insert.setObject(1, id);
+                insert.setString(2, id + "@example.com");
+                insert.setString(3, "{bcrypt}$2a$10$benchmarkbenchmarkbenchmarkbenchmarkbenchmarkbenchm");
+                insert.setTimestamp(4, now);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+    }
+
+    /**
+     * One batch of logins, each replacing the user's refresh token with a fresh id, as
+     * {@code RefreshTokenRepository.upsertRefreshToken} does.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void upsertRefreshToken() throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Timestamp expiry = Timestamp.from(Instant.now().plus(7, ChronoUnit.DAYS));
+        try (PreparedStatement upsert = connection.prepareStatement("""
+                INSERT INTO benchmark_schema.refresh_tokens (id, token, user_id, expiry_date)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (user_id)
+                DO UPDATE SET token = EXCLUDED.token, expiry_date = EXCLUDED.expiry_date, id = EXCLUDED.id""")) {
+            // Distinct users per batch: one statement may not touch the same row twice
+            int start = random.nextInt(userIds.length - BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                upsert.setObject(1, idGenerator.next());
+                upsert.setString(2, UUID.randomUUID().toString());
+                upsert.setObject(3, userIds[start + i]);
+                upsert.setTimestamp(4, expiry);
+                upsert.addBatch();
+            }
+            upsert.executeBatch();
+        }
+        connection.commit();
+    }
+}
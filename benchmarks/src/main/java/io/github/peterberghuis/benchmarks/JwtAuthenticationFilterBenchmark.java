@@ -0,0 +1,58 @@
+package io.github.peterberghuis.benchmarks;
+
+import io.github.peterberghuis.security.JwtAuthenticationFilter;
+import io.github.peterberghuis.security.JwtUtils;
+import io.github.peterberghuis.security.SecurityFixtures;
+import io.github.peterberghuis.security.TokenUser;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full pass of the JWT filter for an authenticated request: header extraction, verification (or cache hit), and
+ * populating the security context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    @Param({"HS256", "Ed25519"})
+    public String algorithm;
+
+    @Param({"false", "true"})
+    public boolean cacheEnabled;
+
+    private JwtAuthenticationFilter filter;
+    private String authorizationHeader;
+
+    @Setup
+    public void setUp() throws Exception {
+        JwtUtils jwtUtils = SecurityFixtures.jwtUtils(algorithm);
+        filter = SecurityFixtures.jwtAuthenticationFilter(jwtUtils, cacheEnabled);
+        authorizationHeader = "Bearer " + jwtUtils.generateToken(new TokenUser("user@example.com", UUID.randomUUID(),
+                "ACTIVE", Instant.now(), List.of("USER")), 0);
+    }
+
+    @Benchmark
+    public Object doFilter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/auth/me");
+        request.addHeader("Authorization", authorizationHeader);
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
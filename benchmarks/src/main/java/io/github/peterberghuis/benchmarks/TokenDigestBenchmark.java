@@ -0,0 +1,32 @@
+package io.github.peterberghuis.benchmarks;
+
+import io.github.peterberghuis.security.SecurityFixtures;
+import io.github.peterberghuis.security.TokenDigest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SHA-256 of a refresh token, as done by {@code AuthService} on every refresh and login, and by the verified-token
+ * cache on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenDigestBenchmark {
+
+    private String refreshToken;
+
+    @Setup
+    public void setUp() throws Exception {
+        refreshToken = SecurityFixtures.jwtUtils("HS256").generateRefreshToken("user@example.com");
+    }
+
+    @Benchmark
+    public String sha256() {
+        return TokenDigest.sha256(refreshToken);
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.peterberghuis.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Builds security lib components the way Spring wires them, for use outside an application context.
+ * Lives in the library's package to reach the package-private {@link JwtUtils#init()}.
+ */
+public final class SecurityFixtures {
+
+    public static final String SECRET = "benchmark-secret-key-that-is-at-least-32-bytes-long";
+
+    private SecurityFixtures() {
+    }
+
+    /**
+     * @param algorithm {@code HS256} for the shared secret, or a JCA key pair algorithm ({@code Ed25519}, {@code EC})
+     *                  for kid-signed tokens
+     */
+    public static JwtUtils jwtUtils(String algorithm) throws NoSuchAlgorithmException {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpiration", 900_000L);
+        ReflectionTestUtils.setField(jwtUtils, "refreshExpiration", 604_800_000L);
+        if (!"HS256".equals(algorithm)) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance(algorithm);
+            if ("EC".equals(algorithm)) {
+                generator.initialize(256); // P-256, signs as ES256
+            }
+            KeyPair keyPair = generator.generateKeyPair();
+            SigningKey key = new SigningKey("benchmark", keyPair.getPrivate(), keyPair.getPublic());
+            ReflectionTestUtils.setField(jwtUtils, "signingKeyProvider", new SigningKeyProvider() {
+                @Override
+                public SigningKey activeKey() {
+                    return key;
+                }
+
+                @Override
+                public List<SigningKey> publishedKeys() {
+                    return List.of(key);
+                }
+            });
+        }
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    public static JwtAuthenticationFilter jwtAuthenticationFilter(JwtUtils jwtUtils, boolean cacheEnabled) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if (cacheEnabled) {
+            beanFactory.addBean("verifiedTokenCache", new VerifiedTokenCache(10_000, beanFactory.getBeanProvider(MeterRegistry.class)));
+        }
+        // No TokenEpochSource: the revocation check is the in-memory lookup only
+        TokenEpochRegistry tokenEpochs = new TokenEpochRegistry(beanFactory.getBeanProvider(TokenEpochSource.class),
+                Duration.ofSeconds(2), 900_000L);
+        return new JwtAuthenticationFilter(jwtUtils, beanFactory.getBeanProvider(VerifiedTokenCache.class),
+                tokenEpochs, SharedSecurityConfig.publicRoutes(), beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+}
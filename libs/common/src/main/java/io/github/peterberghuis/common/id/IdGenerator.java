@@ -0,0 +1,12 @@
+package io.github.peterberghuis.common.id;
+
+import java.util.UUID;
+
+/**
+ * Primary keys for new rows. The strategy is picked with {@code ids.strategy}, see {@link IdStrategy}.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+    UUID next();
+}
@@ -0,0 +1,19 @@
+package io.github.peterberghuis.common.id;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.UUID;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    @Bean
+    public IdGenerator idGenerator(IdGeneratorProperties properties) {
+        return switch (properties.getStrategy()) {
+            case UUID_V7 -> new UuidV7Generator();
+            case SHARDED -> new ShardedUuidGenerator(properties.getShards());
+            case RANDOM -> UUID::randomUUID;
+        };
+    }
+}
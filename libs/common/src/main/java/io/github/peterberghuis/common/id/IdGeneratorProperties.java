@@ -0,0 +1,20 @@
+package io.github.peterberghuis.common.id;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "ids")
+public class IdGeneratorProperties {
+
+    private IdStrategy strategy = IdStrategy.UUID_V7;
+
+    /**
+     * Key ranges used by {@link IdStrategy#SHARDED}. Roughly the number of nodes that should share the insert load.
+     */
+    private int shards = 16;
+}
@@ -0,0 +1,21 @@
+package io.github.peterberghuis.common.id;
+
+public enum IdStrategy {
+
+    /**
+     * Time-ordered UUIDv7. New keys land at the right edge of the primary key index, which keeps PostgreSQL B-tree
+     * inserts local instead of touching a random leaf page per row.
+     */
+    UUID_V7,
+
+    /**
+     * Time-ordered within {@code ids.shards} key ranges (a shard byte in front of the timestamp). For CockroachDB,
+     * where strictly increasing keys send every insert to the same range.
+     */
+    SHARDED,
+
+    /**
+     * Random UUIDv4, the previous behaviour.
+     */
+    RANDOM
+}
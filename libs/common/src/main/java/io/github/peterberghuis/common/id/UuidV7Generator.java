@@ -0,0 +1,21 @@
+package io.github.peterberghuis.common.id;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * RFC 9562 UUIDv7: 48 bits of Unix milliseconds, then 74 random bits. IDs from the same millisecond are not ordered
+ * among themselves. The random part is not from a secure source; these IDs are keys, not secrets.
+ */
+public class UuidV7Generator implements IdGenerator {
+
+    @Override
+    public UUID next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long msb = (System.currentTimeMillis() << 16)
+                | 0x7000L
+                | (random.nextLong() & 0x0FFFL);
+        long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+}
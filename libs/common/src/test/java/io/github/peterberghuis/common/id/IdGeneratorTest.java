@@ -0,0 +1,53 @@
+package io.github.peterberghuis.common.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdGeneratorTest {
+
+    @Test
+    void uuidV7ShouldCarryVersionVariantAndTime() {
+        long before = System.currentTimeMillis();
+        UUID id = new UuidV7Generator().next();
+        long after = System.currentTimeMillis();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        long millis = id.getMostSignificantBits() >>> 16;
+        assertTrue(millis >= before && millis <= after);
+    }
+
+    @Test
+    void uuidV7ShouldOrderAcrossMilliseconds() throws InterruptedException {
+        UuidV7Generator generator = new UuidV7Generator();
+        UUID first = generator.next();
+        Thread.sleep(2);
+        UUID second = generator.next();
+
+        // Compared as unsigned bytes, the way PostgreSQL and CockroachDB order uuid columns
+        assertTrue(Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits()) < 0);
+    }
+
+    @Test
+    void shardedShouldKeepShardPrefixAndTime() {
+        long before = System.currentTimeMillis();
+        UUID id = new ShardedUuidGenerator(4).next();
+        long after = System.currentTimeMillis();
+
+        assertEquals(8, id.version());
+        assertEquals(2, id.variant());
+        long msb = id.getMostSignificantBits();
+        assertTrue((msb >>> 56) < 4);
+        long millis = (((msb >>> 16) & 0xFFFFFFFFFFL) << 8) | ((msb >>> 4) & 0xFF);
+        assertTrue(millis >= before && millis <= after);
+    }
+
+    @Test
+    void shardedShouldRejectShardCountOutsideOneByte() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedUuidGenerator(0));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedUuidGenerator(257));
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.peterberghuis.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared, immutable authority lists, one per distinct role combination, so authenticating a request allocates none.
+ */
+final class GrantedRoles {
+
+    // Role lists outside RoleBits (legacy or custom authorities) come from signed tokens, but stay bounded anyway
+    private static final int MAX_INTERNED = 1024;
+
+    private static final List<List<GrantedAuthority>> BY_BITS = byBits();
+    private static final Map<List<String>, List<GrantedAuthority>> INTERNED = new ConcurrentHashMap<>();
+
+    private GrantedRoles() {
+    }
+
+    static List<GrantedAuthority> of(List<String> roles) {
+        int bits = RoleBits.encode(roles);
+        if (bits >= 0) {
+            return BY_BITS.get(bits);
+        }
+        List<GrantedAuthority> authorities = INTERNED.get(roles);
+        if (authorities != null) {
+            return authorities;
+        }
+        authorities = toAuthorities(roles);
+        if (INTERNED.size() < MAX_INTERNED) {
+            List<GrantedAuthority> raced = INTERNED.putIfAbsent(List.copyOf(roles), authorities);
+            return raced != null ? raced : authorities;
+        }
+        return authorities;
+    }
+
+    private static List<List<GrantedAuthority>> byBits() {
+        List<List<GrantedAuthority>> byBits = new ArrayList<>();
+        for (int bits = 0; bits < 1 << RoleBits.NAMES.size(); bits++) {
+            byBits.add(toAuthorities(RoleBits.decode(bits)));
+        }
+        return List.copyOf(byBits);
+    }
+
+    private static List<GrantedAuthority> toAuthorities(List<String> roles) {
+        return roles.stream()
+                .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                .toList();
+    }
+}
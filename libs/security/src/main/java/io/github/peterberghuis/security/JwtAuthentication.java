@@ -0,0 +1,98 @@
+package io.github.peterberghuis.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.io.Serial;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The {@link Authentication} set by {@link JwtAuthenticationFilter}. Immutable and always authenticated: the principal
+ * is the token's {@link TokenUser}, there are no credentials or details, and the authorities are the list shared by
+ * every token with the same roles.
+ */
+public final class JwtAuthentication implements Authentication {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final TokenUser principal;
+    private final List<GrantedAuthority> authorities;
+
+    public JwtAuthentication(TokenUser principal) {
+        this.principal = principal;
+        this.authorities = GrantedRoles.of(principal.roles());
+    }
+
+    /**
+     * {@code null} for tokens issued without the user claims.
+     */
+    public UUID userId() {
+        return principal.id();
+    }
+
+    public String email() {
+        return principal.email();
+    }
+
+    public List<String> roles() {
+        return principal.roles();
+    }
+
+    @Override
+    public String getName() {
+        return principal.email();
+    }
+
+    @Override
+    public TokenUser getPrincipal() {
+        return principal;
+    }
+
+    @Override
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public Object getDetails() {
+        return null;
+    }
+
+    @Override
+    public boolean isAuthenticated() {
+        return true;
+    }
+
+    /**
+     * @throws IllegalArgumentException on {@code false}; clear the security context instead
+     */
+    @Override
+    public void setAuthenticated(boolean authenticated) {
+        if (!authenticated) {
+            throw new IllegalArgumentException("JwtAuthentication is immutable; clear the SecurityContext instead");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof JwtAuthentication other && principal.equals(other.principal);
+    }
+
+    @Override
+    public int hashCode() {
+        return principal.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "JwtAuthentication[email=" + principal.email() + ", userId=" + principal.id() + ", roles="
+                + principal.roles() + "]";
+    }
+}
@@ -1,25 +1,60 @@
 package io.github.peterberghuis.security;
 
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtils jwtUtils;
-
-    public JwtAuthenticationFilter(JwtUtils jwtUtils) {
+    private final VerifiedTokenCache tokenCache;
+    private final TokenEpochRegistry tokenEpochs;
+    private final PublicRoutes publicRoutes;
+    private final Map<PublicRoutes.Route, Counter> skipped = new IdentityHashMap<>();
+
+    public JwtAuthenticationFilter(JwtUtils jwtUtils, ObjectProvider<VerifiedTokenCache> tokenCache,
+                                   TokenEpochRegistry tokenEpochs, PublicRoutes publicRoutes,
+                                   ObjectProvider<MeterRegistry> meterRegistry) {
         this.jwtUtils = jwtUtils;
+        this.tokenCache = tokenCache.getIfAvailable();
+        this.tokenEpochs = tokenEpochs;
+        this.publicRoutes = publicRoutes;
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        for (PublicRoutes.Route route : publicRoutes.routes()) {
+            skipped.put(route, Counter.builder("security.jwt.filter.skipped")
+                    .description("Requests to public routes passed through without token handling")
+                    .tag("route", route.toString())
+                    .register(registry));
+        }
+    }
+
+    /**
+     * Public routes never read the principal, so their requests skip header parsing and token work entirely, even
+     * when they carry a token.
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        PublicRoutes.Route route = publicRoutes.match(request);
+        if (route == null) {
+            return false;
+        }
+        skipped.get(route).increment();
+        return true;
     }
 
     @Override
@@ -30,44 +65,35 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         String token = getJwtFromRequest(request);
 
-        try {
-            // No token → continue chain
-            if (!StringUtils.hasText(token)) {
-                filterChain.doFilter(request, response);
-                return;
-            }
+        // No token → continue chain unauthenticated
+        if (StringUtils.hasText(token)) {
+            authenticate(token);
+        }
+
+        filterChain.doFilter(request, response);
+    }
 
-            // Token exists but invalid/expired → force 401
-            if (!jwtUtils.validateToken(token)) {
-                // If it's a permitAll path, we can ignore the invalid token
-                // But OncePerRequestFilter doesn't easily know if the path is permitAll
-                // without access to the SecurityFilterChain or matching logic.
-                // However, many implementations just clear context and continue if it's not a required auth path.
-                // If we sendError here, we block even permitAll paths if they happen to have an invalid header.
+    private void authenticate(String token) {
+        try {
+            // Signature and expiry are checked once; the claims are read from the same parse.
+            // With the cache enabled, a repeated token skips the crypto and JSON parsing entirely.
+            VerifiedToken verified = tokenCache != null
+                    ? tokenCache.get(token, jwtUtils::verify)
+                    : jwtUtils.verify(token);
+
+            // Checked on every request, cached or not: a memory lookup against the polled revocations. Revocation is
+            // keyed by user id, so a token without one could never be revoked and is not accepted at all.
+            if (verified.userId() == null || tokenEpochs.isRevoked(verified.userId(), verified.epoch())) {
                 SecurityContextHolder.clearContext();
-                filterChain.doFilter(request, response);
                 return;
             }
 
-            // Valid token → authenticate
-            String username = jwtUtils.getUsernameFromToken(token);
-            var authorities = jwtUtils.getAuthoritiesFromToken(token);
-
-            UsernamePasswordAuthenticationToken authentication =
-                    new UsernamePasswordAuthenticationToken(username, null, authorities);
-
-            authentication.setDetails(
-                    new WebAuthenticationDetailsSource().buildDetails(request)
-            );
-
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-
-            filterChain.doFilter(request, response);
-
-        } catch (Exception ex) {
-            // Any JWT parsing/signature/expiration error
+            // Immutable, with the role combination's shared authority list: no per-request authority objects
+            SecurityContextHolder.getContext().setAuthentication(new JwtAuthentication(verified.user()));
+        } catch (JwtException | IllegalArgumentException ex) {
+            // Token exists but is invalid/expired. We don't know here whether the path is permitAll,
+            // so we clear the context and let the authorization rules send the 401 where one is required.
             SecurityContextHolder.clearContext();
-            filterChain.doFilter(request, response);
         }
     }
 
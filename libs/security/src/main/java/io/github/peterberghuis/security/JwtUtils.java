@@ -1,24 +1,51 @@
 package io.github.peterberghuis.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Header;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.ProtectedHeader;
+import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SecurityException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.PublicKey;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtils {
 
-    @Value("${jwt.secret}")
+    private static final String ROLES_CLAIM = "roles";
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String STATUS_CLAIM = "status";
+    private static final String CREATED_AT_CLAIM = "created";
+    private static final String EPOCH_CLAIM = "ep";
+    // Both token kinds share the signing key, so the type keeps a refresh token from passing as an access token
+    private static final String TYPE_CLAIM = "typ";
+    private static final String ACCESS_TYPE = "access";
+    private static final String REFRESH_TYPE = "refresh";
+
+    // Optional once every service verifies through jwt.jwks.uri or a SigningKeyProvider
+    @Value("${jwt.secret:}")
     private String secret;
 
     @Value("${jwt.expiration}")
@@ -27,39 +54,162 @@ public class JwtUtils {
     @Value("${jwt.refresh-expiration}")
     private Long refreshExpiration;
 
+    // Services before RoleBits read the roles claim as names only, so the mask is written once none of them is left
+    @Value("${jwt.roles-bitmask:false}")
+    private boolean rolesBitmask;
+
+    // Present in the issuing service when tokens are signed with asymmetric keys
+    @Autowired(required = false)
+    private SigningKeyProvider signingKeyProvider;
+
+    // Present when jwt.jwks.uri points at the issuer's JWKS endpoint
+    @Autowired(required = false)
+    private RemoteJwkSet remoteJwkSet;
+
+    // Absent outside a Spring Boot application; the timers then go to the global registry
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    // Derived once at startup; JwtParser is immutable and safe to share between request threads
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    private Timer accessSignTimer;
+    private Timer refreshSignTimer;
+    private Timer validVerifyTimer;
+    private Timer invalidVerifyTimer;
+
+    @PostConstruct
+    void init() {
+        if (StringUtils.hasText(secret)) {
+            signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        }
+        parser = Jwts.parser()
+                .keyLocator(this::locateVerificationKey)
+                .build();
+
+        MeterRegistry registry = meterRegistry != null ? meterRegistry : Metrics.globalRegistry;
+        accessSignTimer = timer("security.jwt.sign", "token", "access", registry);
+        refreshSignTimer = timer("security.jwt.sign", "token", "refresh", registry);
+        validVerifyTimer = timer("security.jwt.verify", "outcome", "valid", registry);
+        invalidVerifyTimer = timer("security.jwt.verify", "outcome", "invalid", registry);
+    }
+
+    private static Timer timer(String name, String tag, String value, MeterRegistry registry) {
+        return Timer.builder(name)
+                .tag(tag, value)
+                .register(registry);
+    }
+
+    /**
+     * Token without the user claims. {@link JwtAuthenticationFilter} does not accept it, as it cannot be revoked; use
+     * {@link #generateToken(TokenUser, long)} for tokens handed to clients.
+     */
     public String generateToken(String username, Collection<? extends GrantedAuthority> authorities) {
         return generateToken(username, authorities, jwtExpiration);
     }
 
     public String generateRefreshToken(String username) {
-        return Jwts.builder()
+        return refreshSignTimer.record(() -> signed(Jwts.builder())
                 .subject(username)
+                .claim(TYPE_CLAIM, REFRESH_TYPE)
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + refreshExpiration))
-                .signWith(getSigningKey())
-                .compact();
+                .compact());
+    }
+
+    /**
+     * Access token that also carries the user's id, status and creation time, so services can answer from
+     * {@link TokenUser} without a user lookup, and the user's token {@code epoch} checked by {@link TokenEpochRegistry}.
+     */
+    public String generateToken(TokenUser user, long epoch) {
+        return accessSignTimer.record(() -> accessToken(user.email(), user.roles(), jwtExpiration)
+                .claim(USER_ID_CLAIM, user.id().toString())
+                .claim(STATUS_CLAIM, user.status())
+                .claim(CREATED_AT_CLAIM, user.createdAt().getEpochSecond())
+                .claim(EPOCH_CLAIM, epoch)
+                .compact());
     }
 
     private String generateToken(String username, Collection<? extends GrantedAuthority> authorities, Long expiration) {
-        String roles = authorities.stream()
+        List<String> roles = authorities.stream()
                 .map(GrantedAuthority::getAuthority)
-                .collect(Collectors.joining(","));
+                .toList();
+
+        return accessSignTimer.record(() -> accessToken(username, roles, expiration).compact());
+    }
 
-        return Jwts.builder()
+    /**
+     * The {@code roles} claim is a {@link RoleBits} mask with {@code jwt.roles-bitmask}, unless one of the roles has no
+     * bit. Otherwise it holds the comma-separated names.
+     */
+    private JwtBuilder accessToken(String username, List<String> roles, Long expiration) {
+        int bits = rolesBitmask ? RoleBits.encode(roles) : -1;
+        return signed(Jwts.builder())
                 .subject(username)
-                .claim("roles", roles)
+                .claim(TYPE_CLAIM, ACCESS_TYPE)
+                .claim(ROLES_CLAIM, bits >= 0 ? bits : String.join(",", roles))
                 .issuedAt(new Date())
-                .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
-                .compact();
+                .expiration(new Date(System.currentTimeMillis() + expiration));
+    }
+
+    /**
+     * Checks the signature and expiry of the access token exactly once and returns its claims.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, expired, not signed by us or not an access token
+     * @throws IllegalArgumentException     if the token is empty
+     */
+    public VerifiedToken verify(String token) {
+        long start = System.nanoTime();
+        try {
+            VerifiedToken verified = parse(token);
+            validVerifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return verified;
+        } catch (RuntimeException e) {
+            invalidVerifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    /**
+     * Checks the signature and expiry of the refresh token and returns its subject. Refresh tokens issued before the
+     * {@code typ} claim are recognized by having no {@code roles} claim, which every access token has.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, expired, not signed by us or not a refresh token
+     * @throws IllegalArgumentException     if the token is empty
+     */
+    public String verifyRefreshToken(String token) {
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        String type = claims.get(TYPE_CLAIM, String.class);
+        if (!REFRESH_TYPE.equals(type) && (type != null || claims.get(ROLES_CLAIM) != null)) {
+            throw new UnsupportedJwtException("Not a refresh token");
+        }
+        return claims.getSubject();
+    }
+
+    private VerifiedToken parse(String token) {
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        if (!ACCESS_TYPE.equals(claims.get(TYPE_CLAIM, String.class))) {
+            throw new UnsupportedJwtException("Not an access token");
+        }
+        String userId = claims.get(USER_ID_CLAIM, String.class);
+        Number createdAt = claims.get(CREATED_AT_CLAIM, Number.class);
+        Number epoch = claims.get(EPOCH_CLAIM, Number.class);
+        return new VerifiedToken(
+                claims.getSubject(),
+                parseRoles(claims.get(ROLES_CLAIM)),
+                toInstant(claims.getIssuedAt()),
+                toInstant(claims.getExpiration()),
+                userId == null ? null : UUID.fromString(userId),
+                claims.get(STATUS_CLAIM, String.class),
+                createdAt == null ? null : Instant.ofEpochSecond(createdAt.longValue()),
+                epoch == null ? 0 : epoch.longValue()
+        );
     }
 
     public boolean validateToken(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
+            verify(token);
             return true;
         } catch (Exception e) {
             return false;
@@ -67,27 +217,69 @@ public class JwtUtils {
     }
 
     public String getUsernameFromToken(String token) {
-        return getClaimsFromToken(token).getSubject();
+        return verify(token).subject();
     }
 
     public Collection<? extends GrantedAuthority> getAuthoritiesFromToken(String token) {
-        Claims claims = getClaimsFromToken(token);
-        String roles = claims.get("roles", String.class);
-        return Arrays.stream(roles.split(","))
-                .map(SimpleGrantedAuthority::new)
-                .toList();
+        return verify(token).authorities();
+    }
+
+    private JwtBuilder signed(JwtBuilder builder) {
+        if (signingKeyProvider != null) {
+            SigningKey key = signingKeyProvider.activeKey();
+            return builder.header().keyId(key.kid()).and()
+                    .signWith(key.privateKey());
+        }
+        if (signingKey == null) {
+            throw new IllegalStateException("No signing key configured: set jwt.secret or provide a SigningKeyProvider");
+        }
+        return builder.signWith(signingKey);
     }
 
-    private Claims getClaimsFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    /**
+     * Tokens with a {@code kid} are verified with the matching public key, first from our own signing keys and then
+     * from the issuer's JWKS. Tokens without one are legacy HMAC tokens, accepted only while {@code jwt.secret} is set.
+     */
+    private Key locateVerificationKey(Header header) {
+        String kid = header instanceof ProtectedHeader protectedHeader ? protectedHeader.getKeyId() : null;
+        if (kid == null) {
+            if (signingKey == null) {
+                throw new UnsupportedJwtException("Token has no key ID and no shared secret is configured");
+            }
+            return signingKey;
+        }
+
+        PublicKey key = findPublicKey(kid);
+        if (key == null) {
+            throw new SecurityException("Unknown signing key ID: " + kid);
+        }
+        return key;
+    }
+
+    private PublicKey findPublicKey(String kid) {
+        if (signingKeyProvider != null) {
+            for (SigningKey key : signingKeyProvider.publishedKeys()) {
+                if (key.kid().equals(kid)) {
+                    return key.publicKey();
+                }
+            }
+        }
+        return remoteJwkSet != null ? remoteJwkSet.find(kid) : null;
+    }
+
+    private static List<String> parseRoles(Object claim) {
+        if (claim instanceof Number bits) {
+            return RoleBits.decode(bits.intValue());
+        }
+        if (!(claim instanceof String roles) || !StringUtils.hasText(roles)) {
+            return List.of();
+        }
+        return Arrays.stream(roles.split(","))
+                .filter(StringUtils::hasText)
+                .toList();
     }
 
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static Instant toInstant(Date date) {
+        return date == null ? null : date.toInstant();
     }
 }
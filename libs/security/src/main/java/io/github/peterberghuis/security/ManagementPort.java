@@ -0,0 +1,28 @@
+package io.github.peterberghuis.security;
+
+import org.springframework.core.env.Environment;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+/**
+ * Requests that arrived on {@code management.server.port}. When that differs from {@code server.port}, Boot serves the
+ * actuator endpoints there only, on a port that is not published, so the Prometheus scrape needs no credentials. On
+ * the application port, actuator endpoints other than the health check require authentication like any other route.
+ */
+public final class ManagementPort {
+
+    private ManagementPort() {
+    }
+
+    /**
+     * For {@code requestMatchers(ManagementPort.requestMatcher(environment)).permitAll()}. Matches nothing while the
+     * management port is unset or equal to the application port.
+     */
+    public static RequestMatcher requestMatcher(Environment environment) {
+        Integer managementPort = environment.getProperty("management.server.port", Integer.class);
+        Integer serverPort = environment.getProperty("server.port", Integer.class, 8080);
+        if (managementPort == null || managementPort <= 0 || managementPort.equals(serverPort)) {
+            return request -> false;
+        }
+        return request -> request.getLocalPort() == managementPort;
+    }
+}
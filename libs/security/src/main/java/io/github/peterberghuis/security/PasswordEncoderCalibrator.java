@@ -0,0 +1,65 @@
+package io.github.peterberghuis.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+/**
+ * Picks password hash work factors for the CPU we are running on, so a verify costs about the target latency instead
+ * of whatever the library default happens to cost on this instance class. Never goes below the previous defaults.
+ */
+@Slf4j
+final class PasswordEncoderCalibrator {
+
+    static final int MIN_BCRYPT_STRENGTH = 10;
+    static final int MAX_BCRYPT_STRENGTH = 16;
+    static final int MIN_ARGON2_ITERATIONS = 2;
+    static final int MAX_ARGON2_ITERATIONS = 10;
+
+    private static final int SAMPLES = 3;
+    private static final String PROBE = "calibration-probe-password";
+
+    private PasswordEncoderCalibrator() {
+    }
+
+    /**
+     * BCrypt cost doubles with every strength step, so one measurement at the minimum strength is enough.
+     */
+    static int bcryptStrength(Duration target) {
+        long nanos = fastestMatch(new BCryptPasswordEncoder(MIN_BCRYPT_STRENGTH));
+        int steps = (int) Math.floor(Math.log((double) target.toNanos() / nanos) / Math.log(2));
+        int strength = Math.clamp(MIN_BCRYPT_STRENGTH + (long) steps, MIN_BCRYPT_STRENGTH, MAX_BCRYPT_STRENGTH);
+        log.info("BCrypt strength {} verifies in {}ms, using strength {} for a {}ms target",
+                MIN_BCRYPT_STRENGTH, nanos / 1_000_000, strength, target.toMillis());
+        return strength;
+    }
+
+    /**
+     * Argon2 cost grows linearly with the iteration count at a fixed memory size.
+     */
+    static int argon2Iterations(Duration target, int memoryKib) {
+        long nanos = fastestMatch(argon2(memoryKib, 1));
+        int iterations = Math.clamp(target.toNanos() / nanos, MIN_ARGON2_ITERATIONS, MAX_ARGON2_ITERATIONS);
+        log.info("Argon2 ({} KiB, 1 iteration) verifies in {}ms, using {} iterations for a {}ms target",
+                memoryKib, nanos / 1_000_000, iterations, target.toMillis());
+        return iterations;
+    }
+
+    static Argon2PasswordEncoder argon2(int memoryKib, int iterations) {
+        return new Argon2PasswordEncoder(16, 32, 1, memoryKib, iterations);
+    }
+
+    private static long fastestMatch(PasswordEncoder encoder) {
+        String hash = encoder.encode(PROBE); // also warms up the code path
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.matches(PROBE, hash);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return Math.max(fastest, 1);
+    }
+}
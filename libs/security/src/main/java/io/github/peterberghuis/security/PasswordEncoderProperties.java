@@ -0,0 +1,35 @@
+package io.github.peterberghuis.security;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "password.encoder")
+public class PasswordEncoderProperties {
+
+    /**
+     * Encoder new hashes are created with, {@code bcrypt} or {@code argon2}. Hashes with another id (or without one)
+     * still verify and are flagged for upgrade.
+     */
+    private String encodingId = "bcrypt";
+
+    /**
+     * Measure the host at startup and pick the work factor that verifies in about {@link #targetLatency}. When
+     * disabled, {@link #bcryptStrength} and {@link #argon2Iterations} are used as is.
+     */
+    private boolean calibrate = true;
+
+    private Duration targetLatency = Duration.ofMillis(100);
+
+    private int bcryptStrength = PasswordEncoderCalibrator.MIN_BCRYPT_STRENGTH;
+
+    private int argon2MemoryKib = 19 * 1024;
+
+    private int argon2Iterations = PasswordEncoderCalibrator.MIN_ARGON2_ITERATIONS;
+}
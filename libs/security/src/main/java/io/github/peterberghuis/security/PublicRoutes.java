@@ -0,0 +1,96 @@
+package io.github.peterberghuis.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes that need no authentication, declared once per service as a bean. The security filter chain permits them
+ * with {@link #requestMatchers()} and {@link JwtAuthenticationFilter} skips token handling on them, so both always
+ * agree. Patterns are parsed once, when the routes are built.
+ */
+public final class PublicRoutes {
+
+    private final List<Route> routes;
+    private final RequestMatcher[] requestMatchers;
+
+    private PublicRoutes(List<Route> routes) {
+        this.routes = List.copyOf(routes);
+        this.requestMatchers = this.routes.stream().map(Route::matcher).toArray(RequestMatcher[]::new);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<Route> routes() {
+        return routes;
+    }
+
+    /**
+     * For {@code authorizeHttpRequests(auth -> auth.requestMatchers(publicRoutes.requestMatchers()).permitAll())}.
+     */
+    public RequestMatcher[] requestMatchers() {
+        return requestMatchers.clone();
+    }
+
+    /**
+     * Returns the first route matching the request, {@code null} if it is not public.
+     */
+    public Route match(HttpServletRequest request) {
+        for (Route route : routes) {
+            if (route.matcher().matches(request)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param method {@code null} for any method
+     */
+    public record Route(HttpMethod method, String pattern, RequestMatcher matcher) {
+
+        @Override
+        public String toString() {
+            return method == null ? pattern : method.name() + " " + pattern;
+        }
+    }
+
+    public static final class Builder {
+
+        private final PathPatternRequestMatcher.Builder matchers = PathPatternRequestMatcher.withDefaults();
+        private final List<Route> routes = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder get(String... patterns) {
+            return add(HttpMethod.GET, patterns);
+        }
+
+        public Builder post(String... patterns) {
+            return add(HttpMethod.POST, patterns);
+        }
+
+        public Builder any(String... patterns) {
+            return add(null, patterns);
+        }
+
+        public PublicRoutes build() {
+            return new PublicRoutes(routes);
+        }
+
+        private Builder add(HttpMethod method, String... patterns) {
+            for (String pattern : patterns) {
+                routes.add(new Route(method, pattern,
+                        method == null ? matchers.matcher(pattern) : matchers.matcher(method, pattern)));
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.peterberghuis.security;
+
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.JwkSet;
+import io.jsonwebtoken.security.Jwks;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Verification keys fetched from the token issuer's JWKS endpoint, indexed by {@code kid}.
+ * <p>
+ * Lookups are served from memory. Once 3/4 of {@code jwt.jwks.refresh-interval} has passed, the next lookup starts a
+ * background refresh, so the keys are renewed before they go stale without blocking a request. An unknown
+ * {@code kid} triggers one synchronous refresh (at most every {@link #MIN_REFRESH_INTERVAL}) to pick up a freshly
+ * rotated key. If a refresh fails the previous keys are kept.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("!'${jwt.jwks.uri:}'.isEmpty()")
+public class RemoteJwkSet {
+
+    static final Duration MIN_REFRESH_INTERVAL = Duration.ofSeconds(30);
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(5);
+
+    private final URI uri;
+    private final long refreshAheadNanos;
+    private final HttpClient httpClient;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile Map<String, PublicKey> keys = Map.of();
+    private volatile long refreshDueAt;
+    private volatile long lastAttemptAt;
+
+    public RemoteJwkSet(@Value("${jwt.jwks.uri}") URI uri,
+                        @Value("${jwt.jwks.refresh-interval:5m}") Duration refreshInterval) {
+        this.uri = uri;
+        this.refreshAheadNanos = refreshInterval.toNanos() / 4 * 3;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(FETCH_TIMEOUT)
+                .build();
+        // nanoTime has an arbitrary origin, so start from "due now, last attempted long enough ago"
+        this.refreshDueAt = System.nanoTime();
+        this.lastAttemptAt = refreshDueAt - MIN_REFRESH_INTERVAL.toNanos();
+    }
+
+    @PostConstruct
+    void init() {
+        refresh();
+    }
+
+    public PublicKey find(String kid) {
+        PublicKey key = keys.get(kid);
+        long now = System.nanoTime();
+        boolean throttled = now - lastAttemptAt < MIN_REFRESH_INTERVAL.toNanos();
+        if (key == null) {
+            if (!throttled) {
+                refresh();
+                key = keys.get(kid);
+            }
+        } else if (now - refreshDueAt >= 0 && !throttled && !refreshLock.isLocked()) {
+            Thread.ofVirtual().name("jwks-refresh").start(this::refresh);
+        }
+        return key;
+    }
+
+    void refresh() {
+        refreshLock.lock();
+        try {
+            // Another thread may have refreshed while we waited for the lock
+            long now = System.nanoTime();
+            if (now - lastAttemptAt < MIN_REFRESH_INTERVAL.toNanos() && now - refreshDueAt < 0) {
+                return;
+            }
+            lastAttemptAt = now;
+            keys = fetch();
+            refreshDueAt = System.nanoTime() + refreshAheadNanos;
+            log.debug("Loaded {} verification keys from {}", keys.size(), uri);
+        } catch (Exception e) {
+            log.warn("Could not refresh verification keys from {}, keeping {} known keys: {}", uri, keys.size(), e.getMessage());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private Map<String, PublicKey> fetch() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(FETCH_TIMEOUT)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("JWKS endpoint returned " + response.statusCode());
+        }
+
+        JwkSet jwkSet = Jwks.setParser().build().parse(response.body());
+        Map<String, PublicKey> fetched = new HashMap<>();
+        for (Jwk<?> jwk : jwkSet) {
+            if (jwk.getId() != null && jwk.toKey() instanceof PublicKey publicKey) {
+                fetched.put(jwk.getId(), publicKey);
+            }
+        }
+        return Map.copyOf(fetched);
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.peterberghuis.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Fetches revocations from the token issuer's revocations endpoint ({@code jwt.revocation.uri}), for services that
+ * do not own the users. Authenticates with {@code jwt.revocation.service-token}, see {@link ServiceToken}.
+ */
+@Component
+@ConditionalOnExpression("!'${jwt.revocation.uri:}'.isEmpty()")
+public class RemoteTokenEpochSource implements TokenEpochSource {
+
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(5);
+
+    private final String uri;
+    private final String serviceToken;
+    private final HttpClient httpClient;
+
+    public RemoteTokenEpochSource(@Value("${jwt.revocation.uri}") String uri,
+                                  @Value("${jwt.revocation.service-token:}") String serviceToken) {
+        this.uri = uri;
+        this.serviceToken = serviceToken;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(FETCH_TIMEOUT)
+                .build();
+    }
+
+    @Override
+    public List<TokenRevocation> revokedSince(Instant since) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(
+                        uri + "?since=" + URLEncoder.encode(since.toString(), StandardCharsets.UTF_8)))
+                .timeout(FETCH_TIMEOUT)
+                .header("Accept", "application/json")
+                .GET();
+        if (!serviceToken.isEmpty()) {
+            builder.header(ServiceToken.HEADER, serviceToken);
+        }
+        HttpRequest request = builder.build();
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not reach " + uri, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching " + uri, e);
+        }
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Revocations endpoint returned " + response.statusCode());
+        }
+
+        List<TokenRevocation> revocations = new ArrayList<>();
+        for (JsonNode node : JsonMapper.shared().readTree(response.body()).path("revocations")) {
+            revocations.add(new TokenRevocation(UUID.fromString(node.path("userId").asString()),
+                    node.path("epoch").asLong()));
+        }
+        return revocations;
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.peterberghuis.security;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Role names as a bitmask, bit {@code i} standing for {@code NAMES.get(i)}. Used for the {@code roles} token claim and
+ * by the auth service for its {@code users.roles} column, so names are only ever appended.
+ */
+public final class RoleBits {
+
+    public static final List<String> NAMES = List.of("USER", "PAID_USER", "ADMIN", "MODERATOR", "SUPPORT");
+
+    private static final int KNOWN = (1 << NAMES.size()) - 1;
+
+    // Every combination decoded once, so verified tokens share their role lists
+    private static final List<List<String>> DECODED = decodeAll();
+
+    private RoleBits() {
+    }
+
+    /**
+     * @throws IllegalArgumentException for a name not in {@link #NAMES}
+     */
+    public static int bit(String role) {
+        int index = NAMES.indexOf(role);
+        if (index < 0) {
+            throw new IllegalArgumentException("Role has no bit: " + role);
+        }
+        return 1 << index;
+    }
+
+    /**
+     * Returns -1 when any of the roles has no bit, e.g. an arbitrary authority string.
+     */
+    public static int encode(Collection<String> roles) {
+        int bits = 0;
+        for (String role : roles) {
+            int index = NAMES.indexOf(role);
+            if (index < 0) {
+                return -1;
+            }
+            bits |= 1 << index;
+        }
+        return bits;
+    }
+
+    /**
+     * Role names in {@link #NAMES} order. Bits this version does not know are ignored.
+     */
+    public static List<String> decode(int bits) {
+        return DECODED.get(bits & KNOWN);
+    }
+
+    private static List<List<String>> decodeAll() {
+        List<List<String>> decoded = new ArrayList<>(KNOWN + 1);
+        for (int bits = 0; bits <= KNOWN; bits++) {
+            List<String> roles = new ArrayList<>();
+            for (int i = 0; i < NAMES.size(); i++) {
+                if ((bits & (1 << i)) != 0) {
+                    roles.add(NAMES.get(i));
+                }
+            }
+            decoded.add(List.copyOf(roles));
+        }
+        return List.copyOf(decoded);
+    }
+}
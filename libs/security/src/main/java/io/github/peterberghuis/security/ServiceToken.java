@@ -0,0 +1,33 @@
+package io.github.peterberghuis.security;
+
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Shared secret for service-to-service endpoints, sent in the {@value #HEADER} header. Keeps internal endpoints such
+ * as auth-service's revocations feed closed to end users without giving the calling service a user token.
+ */
+public final class ServiceToken {
+
+    public static final String HEADER = "X-Service-Token";
+
+    private ServiceToken() {
+    }
+
+    /**
+     * For {@code requestMatchers(...).access(ServiceToken.required(token))}. Grants requests whose header equals
+     * {@code token}, compared in constant time. An empty {@code token} denies every request.
+     */
+    public static AuthorizationManager<RequestAuthorizationContext> required(String token) {
+        byte[] expected = token.getBytes(StandardCharsets.UTF_8);
+        return (authentication, context) -> {
+            String presented = context.getRequest().getHeader(HEADER);
+            return new AuthorizationDecision(expected.length > 0 && presented != null
+                    && MessageDigest.isEqual(expected, presented.getBytes(StandardCharsets.UTF_8)));
+        };
+    }
+}
@@ -1,15 +1,20 @@
 package io.github.peterberghuis.security;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -18,6 +23,7 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSecurity
@@ -31,14 +37,68 @@ public class SharedSecurityConfig {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
     }
 
+    /**
+     * Delegating encoder writing {@code {id}}-prefixed hashes with {@code password.encoder.encoding-id}. Unprefixed
+     * hashes from before the prefix was introduced are verified as BCrypt. {@code upgradeEncoding} is true for hashes
+     * with another id, no id, or a lower work factor than the calibrated one. Lazy, so services that never hash
+     * passwords skip the calibration.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    @Lazy
+    public PasswordEncoder passwordEncoder(PasswordEncoderProperties properties) {
+        int bcryptStrength = properties.getBcryptStrength();
+        int argon2Iterations = properties.getArgon2Iterations();
+        if (properties.isCalibrate()) {
+            switch (properties.getEncodingId()) {
+                case "bcrypt" -> bcryptStrength = PasswordEncoderCalibrator.bcryptStrength(properties.getTargetLatency());
+                case "argon2" -> argon2Iterations = PasswordEncoderCalibrator.argon2Iterations(
+                        properties.getTargetLatency(), properties.getArgon2MemoryKib());
+                default -> {
+                }
+            }
+        }
+
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        Map<String, PasswordEncoder> encoders = Map.of(
+                "bcrypt", bcrypt,
+                "argon2", PasswordEncoderCalibrator.argon2(properties.getArgon2MemoryKib(), argon2Iterations));
+        if (!encoders.containsKey(properties.getEncodingId())) {
+            throw new IllegalStateException("Unknown password.encoder.encoding-id: " + properties.getEncodingId());
+        }
+
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(properties.getEncodingId(), encoders);
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return passwordEncoder;
+    }
+
+    /**
+     * Static: the filter depends on it, and this configuration depends on the filter. Services with more public
+     * endpoints declare their own. The Prometheus scrape is not one of them, see {@link ManagementPort}.
+     */
+    @Bean
+    @ConditionalOnMissingBean(PublicRoutes.class)
+    public static PublicRoutes publicRoutes() {
+        return PublicRoutes.builder()
+                .any("/actuator/health")
+                .build();
+    }
+
+    /**
+     * The filter runs inside the security filter chain only. Without this, Boot also registers the component with the
+     * servlet container, and that second pass would match and count every public request twice.
+     */
+    @Bean
+    public FilterRegistrationBean<JwtAuthenticationFilter> jwtAuthenticationFilterRegistration() {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration =
+                new FilterRegistrationBean<>(jwtAuthenticationFilter);
+        registration.setEnabled(false);
+        return registration;
     }
 
     @Bean
     @ConditionalOnMissingBean(SecurityFilterChain.class)
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, PublicRoutes publicRoutes,
+                                                   Environment environment) throws Exception {
         http
                 .cors(Customizer.withDefaults())
                 .csrf(AbstractHttpConfigurer::disable)
@@ -48,7 +108,11 @@ public class SharedSecurityConfig {
                                 res.sendError(HttpServletResponse.SC_UNAUTHORIZED))
                 )
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/actuator/health").permitAll()
+                        // Resuming a streamed or async response: the request was authorized when it first came in,
+                        // and the token filter does not run again to restore the authentication
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                        .requestMatchers(publicRoutes.requestMatchers()).permitAll()
+                        .requestMatchers(ManagementPort.requestMatcher(environment)).permitAll()
                         .anyRequest().authenticated()
                 )
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
@@ -61,7 +125,10 @@ public class SharedSecurityConfig {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOrigins(corsProperties.getAllowedOriginsList());
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
-        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "X-Requested-With"));
+        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "X-Requested-With", "If-None-Match",
+                "If-Match"));
+        // Lets browser code read the ETag it sends back as If-None-Match or If-Match
+        configuration.setExposedHeaders(List.of("ETag"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
@@ -0,0 +1,15 @@
+package io.github.peterberghuis.security;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+/**
+ * An asymmetric key pair identified by its {@code kid}. The private key is {@code null} for keys that are only
+ * published for verification (retired keys with tokens still in flight, or the next key before it becomes active).
+ */
+public record SigningKey(String kid, PrivateKey privateKey, PublicKey publicKey) {
+
+    public boolean canSign() {
+        return privateKey != null;
+    }
+}
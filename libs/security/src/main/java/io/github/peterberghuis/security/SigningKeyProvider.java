@@ -0,0 +1,18 @@
+package io.github.peterberghuis.security;
+
+import java.util.List;
+
+/**
+ * Source of the asymmetric keys a token issuer signs with. When a bean of this type is present, {@link JwtUtils}
+ * signs with the active key and puts its {@code kid} in the token header instead of using the shared HMAC secret.
+ */
+public interface SigningKeyProvider {
+
+    SigningKey activeKey();
+
+    /**
+     * All keys that tokens may currently be signed with, including the active one. These are the keys published in
+     * the JWKS document.
+     */
+    List<SigningKey> publishedKeys();
+}
@@ -0,0 +1,111 @@
+package io.github.peterberghuis.security;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Current token epoch of every user whose tokens were revoked recently, held in memory so the JWT filter can reject
+ * revoked access tokens without a database lookup.
+ * <p>
+ * A user's epoch goes up on logout or suspension, and access tokens carry the epoch they were issued with. A token
+ * with a lower epoch than the one known here is revoked. The map is kept current by polling the
+ * {@link TokenEpochSource} every {@code jwt.revocation.poll-interval} for revocations since the previous poll
+ * (with some overlap for late commits and clock skew). Revocations older than an access token's lifetime no longer
+ * matter and are dropped by a periodic full reload. Without a source, nothing is ever revoked.
+ */
+@Slf4j
+@Component
+public class TokenEpochRegistry implements DisposableBean {
+
+    static final Duration POLL_OVERLAP = Duration.ofSeconds(10);
+
+    private final TokenEpochSource source;
+    private final Duration pollInterval;
+    private final Duration retention;
+    private final ScheduledExecutorService poller;
+
+    private volatile Map<UUID, Long> epochs = new ConcurrentHashMap<>();
+    // Only touched by the poller thread after start()
+    private Instant polledAt;
+    private Instant reloadDueAt;
+
+    public TokenEpochRegistry(ObjectProvider<TokenEpochSource> source,
+                              @Value("${jwt.revocation.poll-interval:2s}") Duration pollInterval,
+                              @Value("${jwt.expiration:900000}") long accessTokenLifetimeMillis) {
+        this.source = source.getIfUnique();
+        this.pollInterval = pollInterval;
+        this.retention = Duration.ofMillis(accessTokenLifetimeMillis).plus(POLL_OVERLAP);
+        this.poller = this.source == null ? null : Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("token-epoch-poll").daemon().factory());
+    }
+
+    @PostConstruct
+    void start() {
+        if (poller == null) {
+            return;
+        }
+        poll();
+        poller.scheduleWithFixedDelay(this::poll, pollInterval.toMillis(), pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isRevoked(UUID userId, long epoch) {
+        Long current = epochs.get(userId);
+        return current != null && epoch < current;
+    }
+
+    /**
+     * Applies a revocation made by this instance right away instead of waiting for the next poll.
+     */
+    public void revoke(UUID userId, long epoch) {
+        epochs.merge(userId, epoch, Math::max);
+    }
+
+    public int size() {
+        return epochs.size();
+    }
+
+    void poll() {
+        Instant now = Instant.now();
+        try {
+            if (polledAt == null || !now.isBefore(reloadDueAt)) {
+                Map<UUID, Long> reloaded = new ConcurrentHashMap<>();
+                merge(reloaded, source.revokedSince(now.minus(retention)));
+                epochs = reloaded;
+                reloadDueAt = now.plus(retention);
+            } else {
+                merge(epochs, source.revokedSince(polledAt.minus(POLL_OVERLAP)));
+            }
+            polledAt = now;
+        } catch (Exception e) {
+            log.warn("Could not poll token revocations, keeping {} known: {}", epochs.size(), e.getMessage());
+        }
+    }
+
+    private static void merge(Map<UUID, Long> epochs, List<TokenRevocation> revocations) {
+        for (TokenRevocation revocation : revocations) {
+            epochs.merge(revocation.userId(), revocation.epoch(), Math::max);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.peterberghuis.security;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Where {@link TokenEpochRegistry} reads revocations from. The token issuer reads its own change table; other
+ * services fetch it from the issuer through {@link RemoteTokenEpochSource}.
+ */
+public interface TokenEpochSource {
+
+    /**
+     * Revocations recorded at or after {@code since}. May return a revocation more than once.
+     */
+    List<TokenRevocation> revokedSince(Instant since);
+}
@@ -0,0 +1,9 @@
+package io.github.peterberghuis.security;
+
+import java.util.UUID;
+
+/**
+ * Access tokens of {@code userId} issued with a token epoch below {@code epoch} are no longer accepted.
+ */
+public record TokenRevocation(UUID userId, long epoch) {
+}
@@ -0,0 +1,32 @@
+package io.github.peterberghuis.security;
+
+import java.io.Serializable;
+import java.security.Principal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The authenticated user as described by a verified access token; the principal set by
+ * {@link JwtAuthenticationFilter}. Obtain it with {@code @AuthenticationPrincipal TokenUser user}.
+ * <p>
+ * {@link #id}, {@link #status} and {@link #createdAt} are {@code null} for tokens issued without the user claims (see
+ * {@link JwtUtils#generateToken(TokenUser, long)}). The values are as of token issuance, so up to {@code jwt.expiration}
+ * old.
+ */
+public record TokenUser(String email, UUID id, String status, Instant createdAt, List<String> roles)
+        implements Principal, Serializable {
+
+    public TokenUser {
+        roles = List.copyOf(roles);
+    }
+
+    public boolean hasUserClaims() {
+        return id != null && status != null && createdAt != null;
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.peterberghuis.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Claims of an access token whose signature and expiry have already been checked by {@link JwtUtils#verify(String)}.
+ * {@code userId}, {@code status} and {@code createdAt} are {@code null} when the token carries no user claims.
+ * {@code epoch} is the user's token epoch at issuance, see {@link TokenEpochRegistry}; 0 when absent.
+ */
+public record VerifiedToken(String subject, List<String> roles, Instant issuedAt, Instant expiresAt,
+                            UUID userId, String status, Instant createdAt, long epoch) {
+
+    public VerifiedToken {
+        roles = List.copyOf(roles);
+    }
+
+    public VerifiedToken(String subject, List<String> roles, Instant issuedAt, Instant expiresAt) {
+        this(subject, roles, issuedAt, expiresAt, null, null, null, 0);
+    }
+
+    public TokenUser user() {
+        return new TokenUser(subject, userId, status, createdAt, roles);
+    }
+
+    /**
+     * Shared between all tokens with the same roles; see {@link JwtAuthentication}.
+     */
+    public List<GrantedAuthority> authorities() {
+        return GrantedRoles.of(roles);
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.peterberghuis.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Function;
+
+/**
+ * Size-bounded cache of already verified access tokens, keyed by the SHA-256 digest of the raw token.
+ * <p>
+ * Each entry expires at the token's own {@code exp}, so a cached token is never served after it would have
+ * failed verification. Enabled with {@code jwt.cache.enabled=true}. Hits, misses, evictions and size are published as
+ * the {@code cache.*} meters tagged {@code cache=jwt_verified_tokens}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "jwt.cache", name = "enabled", havingValue = "true")
+public class VerifiedTokenCache {
+
+    private final Cache<String, VerifiedToken> cache;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.maximum-size:10000}") long maximumSize,
+                              ObjectProvider<MeterRegistry> meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(Expiry.creating((String key, VerifiedToken token) -> timeToLive(token)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry), cache,
+                "jwt_verified_tokens");
+    }
+
+    /**
+     * Returns the cached claims for the token, or verifies it with {@code verifier} and caches the result.
+     * Tokens that fail verification are never cached; the verifier's exception is propagated.
+     */
+    public VerifiedToken get(String token, Function<String, VerifiedToken> verifier) {
+        String key = TokenDigest.sha256(token);
+        VerifiedToken verified = cache.get(key, k -> verifier.apply(token));
+
+        // Guards against wall-clock jumps between the insert and now; re-verifying rejects the token
+        if (isExpired(verified)) {
+            cache.invalidate(key);
+            return verifier.apply(token);
+        }
+        return verified;
+    }
+
+    private static Duration timeToLive(VerifiedToken token) {
+        if (token.expiresAt() == null) {
+            return Duration.ZERO;
+        }
+        Duration remaining = Duration.between(Instant.now(), token.expiresAt());
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    private static boolean isExpired(VerifiedToken token) {
+        return token.expiresAt() == null || !token.expiresAt().isAfter(Instant.now());
+    }
+}
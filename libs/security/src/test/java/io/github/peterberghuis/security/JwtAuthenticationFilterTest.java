@@ -0,0 +1,111 @@
+package io.github.peterberghuis.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JwtAuthenticationFilterTest {
+
+    private static final UUID USER_ID = UUID.fromString("0190f5c2-7a3e-7000-8000-000000000001");
+
+    private final JwtUtils jwtUtils = mock(JwtUtils.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TokenEpochRegistry tokenEpochs;
+    private final JwtAuthenticationFilter filter = filter(PublicRoutes.builder()
+            .any("/actuator/health")
+            .post("/api/v1/auth/login")
+            .build());
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_ShouldSkipTokenHandlingOnPublicRoutes() throws Exception {
+        doFilter("GET", "/actuator/health");
+        doFilter("POST", "/api/v1/auth/login");
+        doFilter("POST", "/api/v1/auth/login");
+
+        verifyNoInteractions(jwtUtils);
+        assertEquals(1, meterRegistry.get("security.jwt.filter.skipped").tag("route", "/actuator/health")
+                .counter().count());
+        assertEquals(2, meterRegistry.get("security.jwt.filter.skipped").tag("route", "POST /api/v1/auth/login")
+                .counter().count());
+    }
+
+    @Test
+    void doFilter_ShouldVerifyTokenOnOtherMethodsAndRoutes() throws Exception {
+        when(jwtUtils.verify(anyString())).thenThrow(new IllegalArgumentException("invalid"));
+
+        doFilter("GET", "/api/v1/auth/login");
+        doFilter("GET", "/api/v1/auth/me");
+
+        verify(jwtUtils, times(2)).verify("token");
+    }
+
+    @Test
+    void doFilter_ShouldAuthenticateTokenWithUserClaims() throws Exception {
+        when(jwtUtils.verify("token")).thenReturn(token(USER_ID, 0));
+
+        doFilter("GET", "/api/v1/auth/me");
+
+        assertInstanceOf(JwtAuthentication.class, SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void doFilter_ShouldRejectTokenWithoutUserId() throws Exception {
+        // Could never be revoked, e.g. issued before the user claims or by the claim-less generateToken
+        when(jwtUtils.verify("token")).thenReturn(token(null, 0));
+
+        doFilter("GET", "/api/v1/auth/me");
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void doFilter_ShouldRejectRevokedToken() throws Exception {
+        when(jwtUtils.verify("token")).thenReturn(token(USER_ID, 0));
+        tokenEpochs.revoke(USER_ID, 1);
+
+        doFilter("GET", "/api/v1/auth/me");
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    private static VerifiedToken token(UUID userId, long epoch) {
+        Instant now = Instant.now();
+        return new VerifiedToken("user@example.com", List.of("USER"), now, now.plusSeconds(60), userId,
+                userId == null ? null : "ACTIVE", userId == null ? null : now, epoch);
+    }
+
+    private void doFilter(String method, String path) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.addHeader("Authorization", "Bearer token");
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    }
+
+    private JwtAuthenticationFilter filter(PublicRoutes publicRoutes) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+        tokenEpochs = new TokenEpochRegistry(beanFactory.getBeanProvider(TokenEpochSource.class),
+                Duration.ofSeconds(2), 900_000L);
+        return new JwtAuthenticationFilter(jwtUtils, beanFactory.getBeanProvider(VerifiedTokenCache.class),
+                tokenEpochs, publicRoutes, beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.peterberghuis.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtAuthenticationTest {
+
+    @Test
+    void authorities_ShouldBeSharedPerRoleCombination() {
+        JwtAuthentication first = new JwtAuthentication(user(List.of("ADMIN", "USER")));
+        JwtAuthentication second = new JwtAuthentication(user(List.of("USER", "ADMIN")));
+        JwtAuthentication custom = new JwtAuthentication(user(List.of("USER", "SCOPE_read")));
+
+        assertSame(first.getAuthorities(), second.getAuthorities());
+        assertEquals(List.of("USER", "ADMIN"), first.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+        assertSame(custom.getAuthorities(), new JwtAuthentication(user(List.of("USER", "SCOPE_read"))).getAuthorities());
+    }
+
+    @Test
+    void setAuthenticated_ShouldRejectFalse() {
+        JwtAuthentication authentication = new JwtAuthentication(user(List.of("USER")));
+
+        assertThrows(IllegalArgumentException.class, () -> authentication.setAuthenticated(false));
+        assertTrue(authentication.isAuthenticated());
+        assertEquals("user@example.com", authentication.getName());
+    }
+
+    private static TokenUser user(List<String> roles) {
+        return new TokenUser("user@example.com", UUID.randomUUID(), "ACTIVE", Instant.now(), roles);
+    }
+}
@@ -1,31 +1,50 @@
 package io.github.peterberghuis.security;
 
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
 import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class JwtUtilsTest {
 
-    @Test
-    void testSigningKeyWithTooShortSecret() {
+    private static final String SECRET = "this-is-a-very-long-secret-key-that-is-at-least-32-bytes";
+
+    private JwtUtils createJwtUtils(String secret, long expiration) {
         JwtUtils jwtUtils = new JwtUtils();
-        ReflectionTestUtils.setField(jwtUtils, "secret", "too-short");
+        ReflectionTestUtils.setField(jwtUtils, "secret", secret);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpiration", expiration);
+        ReflectionTestUtils.setField(jwtUtils, "refreshExpiration", expiration);
+        jwtUtils.init();
+        return jwtUtils;
+    }
 
+    @Test
+    void testSigningKeyWithTooShortSecret() {
         // This is expected to throw an WeakKeyException (or similar from JJWT)
-        // when getSigningKey is called via generateToken
+        // when the signing key is derived at startup
         assertThrows(Exception.class, () -> {
+            JwtUtils jwtUtils = createJwtUtils("too-short", 3600000L);
             jwtUtils.generateToken("user", Collections.emptyList());
         });
     }
 
     @Test
     void testSigningKeyWithAdequateSecret() {
-        JwtUtils jwtUtils = new JwtUtils();
-        ReflectionTestUtils.setField(jwtUtils, "secret", "this-is-a-very-long-secret-key-that-is-at-least-32-bytes");
-        ReflectionTestUtils.setField(jwtUtils, "jwtExpiration", 3600000L);
+        JwtUtils jwtUtils = createJwtUtils(SECRET, 3600000L);
 
         String token = jwtUtils.generateToken("user", Collections.emptyList());
         assertNotNull(token);
@@ -33,10 +52,8 @@ class JwtUtilsTest {
 
     @Test
     void testExpiredToken() {
-        JwtUtils jwtUtils = new JwtUtils();
-        ReflectionTestUtils.setField(jwtUtils, "secret", "this-is-a-very-long-secret-key-that-is-at-least-32-bytes");
         // Set a negative expiration time to make the token immediately expired
-        ReflectionTestUtils.setField(jwtUtils, "jwtExpiration", -1000L);
+        JwtUtils jwtUtils = createJwtUtils(SECRET, -1000L);
 
         String token = jwtUtils.generateToken("user", Collections.emptyList());
         assertNotNull(token);
@@ -44,4 +61,161 @@ class JwtUtilsTest {
         boolean isValid = jwtUtils.validateToken(token);
         assertFalse(isValid);
     }
+
+    @Test
+    void testVerifyReturnsClaimsFromSingleParse() {
+        JwtUtils jwtUtils = createJwtUtils(SECRET, 3600000L);
+
+        String token = jwtUtils.generateToken("user@example.com",
+                List.of(new SimpleGrantedAuthority("USER"), new SimpleGrantedAuthority("ADMIN")));
+
+        VerifiedToken verified = jwtUtils.verify(token);
+        assertEquals("user@example.com", verified.subject());
+        assertEquals(List.of("USER", "ADMIN"), verified.roles());
+        assertNotNull(verified.issuedAt());
+        assertTrue(verified.expiresAt().isAfter(verified.issuedAt()));
+    }
+
+    @Test
+    void testRefreshTokenIsNotAnAccessToken() {
+        JwtUtils jwtUtils = createJwtUtils(SECRET, 3600000L);
+
+        String refreshToken = jwtUtils.generateRefreshToken("user@example.com");
+
+        assertThrows(JwtException.class, () -> jwtUtils.verify(refreshToken));
+        assertFalse(jwtUtils.validateToken(refreshToken));
+        assertEquals("user@example.com", jwtUtils.verifyRefreshToken(refreshToken));
+    }
+
+    @Test
+    void testAccessTokenIsNotARefreshToken() {
+        JwtUtils jwtUtils = createJwtUtils(SECRET, 3600000L);
+
+        String accessToken = jwtUtils.generateToken("user@example.com", Collections.emptyList());
+
+        assertThrows(JwtException.class, () -> jwtUtils.verifyRefreshToken(accessToken));
+    }
+
+    @Test
+    void testUntypedTokensAreOnlyAcceptedAsLegacyRefreshTokens() {
+        JwtUtils jwtUtils = createJwtUtils(SECRET, 3600000L);
+        var key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        Instant now = Instant.now();
+        String legacyRefresh = Jwts.builder().subject("user@example.com").issuedAt(Date.from(now))
+                .expiration(Date.from(now.plusSeconds(60))).signWith(key).compact();
+        String legacyAccess = Jwts.builder().subject("user@example.com").claim("roles", 1)
+                .issuedAt(Date.from(now)).expiration(Date.from(now.plusSeconds(60)))
+                .signWith(key).compact();
+
+        assertEquals("user@example.com", jwtUtils.verifyRefreshToken(legacyRefresh));
+        assertThrows(JwtException.class, () -> jwtUtils.verify(legacyRefresh));
+        assertThrows(JwtException.class, () -> jwtUtils.verifyRefreshToken(legacyAccess));
+        assertThrows(JwtException.class, () -> jwtUtils.verify(legacyAccess));
+    }
+
+    @Test
+    void testVerifyReturnsUserClaims() {
+        JwtUtils jwtUtils = createJwtUtils(SECRET, 3600000L);
+        TokenUser user = new TokenUser("user@example.com", UUID.randomUUID(), "ACTIVE",
+                Instant.parse("2026-01-18T21:47:00Z"), List.of("USER"));
+
+        VerifiedToken verified = jwtUtils.verify(jwtUtils.generateToken(user, 3));
+        assertEquals(user, verified.user());
+        assertTrue(verified.user().hasUserClaims());
+        assertEquals(3, verified.epoch());
+    }
+
+    @Test
+    void testRolesClaimIsNamesByDefault() {
+        JwtUtils jwtUtils = createJwtUtils(SECRET, 3600000L);
+
+        String compact = jwtUtils.generateToken("user", List.of(new SimpleGrantedAuthority("USER"),
+                new SimpleGrantedAuthority("ADMIN")));
+        assertEquals("USER,ADMIN", Jwts.parser().verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build().parseSignedClaims(compact).getPayload().get("roles", String.class));
+        assertEquals(List.of("USER", "ADMIN"), jwtUtils.verify(compact).roles());
+    }
+
+    @Test
+    void testRolesClaimIsBitmaskUnlessARoleHasNoBit() {
+        JwtUtils jwtUtils = createJwtUtils(SECRET, 3600000L);
+        ReflectionTestUtils.setField(jwtUtils, "rolesBitmask", true);
+
+        String compact = jwtUtils.generateToken("user", List.of(new SimpleGrantedAuthority("ADMIN"),
+                new SimpleGrantedAuthority("USER")));
+        assertEquals(5, Jwts.parser().verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8))).build()
+                .parseSignedClaims(compact).getPayload().get("roles", Integer.class));
+        assertEquals(List.of("USER", "ADMIN"), jwtUtils.verify(compact).roles());
+
+        String named = jwtUtils.generateToken("user", List.of(new SimpleGrantedAuthority("USER"),
+                new SimpleGrantedAuthority("SCOPE_read")));
+        assertEquals(List.of("USER", "SCOPE_read"), jwtUtils.verify(named).roles());
+    }
+
+    @Test
+    void testVerifyRejectsTokenSignedWithOtherKey() {
+        JwtUtils issuer = createJwtUtils("another-very-long-secret-key-that-is-at-least-32-bytes", 3600000L);
+        JwtUtils verifier = createJwtUtils(SECRET, 3600000L);
+
+        String token = issuer.generateToken("user", Collections.emptyList());
+
+        assertThrows(JwtException.class, () -> verifier.verify(token));
+    }
+
+    @Test
+    void testVerifyTokenSignedWithActiveAsymmetricKey() throws NoSuchAlgorithmException {
+        SigningKey key = createSigningKey("key-1", "Ed25519");
+        JwtUtils jwtUtils = createJwtUtils(SECRET, 3600000L);
+        ReflectionTestUtils.setField(jwtUtils, "signingKeyProvider", providerOf(key, List.of(key)));
+
+        String token = jwtUtils.generateToken("user", List.of(new SimpleGrantedAuthority("USER")));
+
+        assertEquals("user", jwtUtils.verify(token).subject());
+    }
+
+    @Test
+    void testVerifyTokenSignedWithRetiredKeyAfterRotation() throws NoSuchAlgorithmException {
+        SigningKey oldKey = createSigningKey("key-1", "EC");
+        SigningKey newKey = createSigningKey("key-2", "EC");
+        JwtUtils issuer = createJwtUtils(SECRET, 3600000L);
+        ReflectionTestUtils.setField(issuer, "signingKeyProvider", providerOf(oldKey, List.of(oldKey)));
+        String token = issuer.generateToken("user", Collections.emptyList());
+
+        JwtUtils rotated = createJwtUtils(SECRET, 3600000L);
+        ReflectionTestUtils.setField(rotated, "signingKeyProvider", providerOf(newKey, List.of(newKey, oldKey)));
+        assertEquals("user", rotated.verify(token).subject());
+
+        JwtUtils retired = createJwtUtils(SECRET, 3600000L);
+        ReflectionTestUtils.setField(retired, "signingKeyProvider", providerOf(newKey, List.of(newKey)));
+        assertThrows(JwtException.class, () -> retired.verify(token));
+    }
+
+    @Test
+    void testVerifyRejectsLegacyTokenWithoutSharedSecret() {
+        JwtUtils issuer = createJwtUtils(SECRET, 3600000L);
+        JwtUtils verifier = createJwtUtils("", 3600000L);
+
+        String token = issuer.generateToken("user", Collections.emptyList());
+
+        assertThrows(JwtException.class, () -> verifier.verify(token));
+    }
+
+    private static SigningKey createSigningKey(String kid, String algorithm) throws NoSuchAlgorithmException {
+        KeyPair keyPair = KeyPairGenerator.getInstance(algorithm).generateKeyPair();
+        return new SigningKey(kid, keyPair.getPrivate(), keyPair.getPublic());
+    }
+
+    private static SigningKeyProvider providerOf(SigningKey active, List<SigningKey> published) {
+        return new SigningKeyProvider() {
+            @Override
+            public SigningKey activeKey() {
+                return active;
+            }
+
+            @Override
+            public List<SigningKey> publishedKeys() {
+                return published;
+            }
+        };
+    }
 }
@@ -0,0 +1,36 @@
+package io.github.peterberghuis.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManagementPortTest {
+
+    @Test
+    void requestMatcher_ShouldMatchOnlyTheSeparateManagementPort() {
+        RequestMatcher matcher = ManagementPort.requestMatcher(new MockEnvironment()
+                .withProperty("server.port", "8081")
+                .withProperty("management.server.port", "9090"));
+
+        assertTrue(matcher.matches(scrape(9090)));
+        assertFalse(matcher.matches(scrape(8081)));
+    }
+
+    @Test
+    void requestMatcher_ShouldMatchNothingWhileActuatorSharesTheApplicationPort() {
+        assertFalse(ManagementPort.requestMatcher(new MockEnvironment()
+                .withProperty("server.port", "8081")).matches(scrape(8081)));
+        assertFalse(ManagementPort.requestMatcher(new MockEnvironment()
+                .withProperty("server.port", "8081")
+                .withProperty("management.server.port", "8081")).matches(scrape(8081)));
+    }
+
+    private static MockHttpServletRequest scrape(int localPort) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/actuator/prometheus");
+        request.setLocalPort(localPort);
+        return request;
+    }
+}
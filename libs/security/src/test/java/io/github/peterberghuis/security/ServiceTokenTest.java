@@ -0,0 +1,36 @@
+package io.github.peterberghuis.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceTokenTest {
+
+    @Test
+    void required_ShouldGrantOnlyTheConfiguredToken() {
+        AuthorizationManager<RequestAuthorizationContext> manager = ServiceToken.required("s3cret");
+
+        assertTrue(granted(manager, "s3cret"));
+        assertFalse(granted(manager, "other"));
+        assertFalse(granted(manager, null));
+    }
+
+    @Test
+    void required_ShouldDenyEverythingWithoutAToken() {
+        AuthorizationManager<RequestAuthorizationContext> manager = ServiceToken.required("");
+
+        assertFalse(granted(manager, ""));
+        assertFalse(granted(manager, null));
+    }
+
+    private static boolean granted(AuthorizationManager<RequestAuthorizationContext> manager, String header) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/auth/revocations");
+        if (header != null) {
+            request.addHeader(ServiceToken.HEADER, header);
+        }
+        return manager.authorize(() -> null, new RequestAuthorizationContext(request)).isGranted();
+    }
+}
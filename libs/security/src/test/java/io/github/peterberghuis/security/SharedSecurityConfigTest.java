@@ -0,0 +1,58 @@
+package io.github.peterberghuis.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedSecurityConfigTest {
+
+    private final SharedSecurityConfig config = new SharedSecurityConfig(new CorsProperties(), null);
+
+    @Test
+    void passwordEncoder_ShouldVerifyAndUpgradeLegacyBcryptHashes() {
+        PasswordEncoder passwordEncoder = config.passwordEncoder(properties("bcrypt", 10));
+        String legacyHash = new BCryptPasswordEncoder(10).encode("Password123!");
+
+        assertTrue(passwordEncoder.matches("Password123!", legacyHash));
+        assertTrue(passwordEncoder.upgradeEncoding(legacyHash));
+
+        String currentHash = passwordEncoder.encode("Password123!");
+        assertTrue(currentHash.startsWith("{bcrypt}$2a$10$"));
+        assertFalse(passwordEncoder.upgradeEncoding(currentHash));
+    }
+
+    @Test
+    void passwordEncoder_ShouldUpgradeWeakerAndOtherAlgorithmHashes() {
+        String weakerHash = config.passwordEncoder(properties("bcrypt", 10)).encode("Password123!");
+        PasswordEncoder argon2 = config.passwordEncoder(properties("argon2", 10));
+
+        assertTrue(config.passwordEncoder(properties("bcrypt", 11)).upgradeEncoding(weakerHash));
+        assertTrue(argon2.matches("Password123!", weakerHash));
+        assertTrue(argon2.upgradeEncoding(weakerHash));
+        assertTrue(argon2.encode("Password123!").startsWith("{argon2}"));
+    }
+
+    @Test
+    void passwordEncoder_ShouldNeverCalibrateBelowTheMinimumStrength() {
+        PasswordEncoderProperties properties = properties("bcrypt", 10);
+        properties.setCalibrate(true);
+        properties.setTargetLatency(Duration.ofNanos(1));
+
+        String hash = config.passwordEncoder(properties).encode("Password123!");
+
+        assertTrue(hash.startsWith("{bcrypt}$2a$10$"));
+    }
+
+    private static PasswordEncoderProperties properties(String encodingId, int bcryptStrength) {
+        PasswordEncoderProperties properties = new PasswordEncoderProperties();
+        properties.setEncodingId(encodingId);
+        properties.setCalibrate(false);
+        properties.setBcryptStrength(bcryptStrength);
+        properties.setArgon2MemoryKib(1024);
+        return properties;
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.peterberghuis.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenEpochRegistryTest {
+
+    private final UUID userId = UUID.randomUUID();
+    private final List<TokenRevocation> revocations = new ArrayList<>();
+    private final List<Instant> requestedSince = new ArrayList<>();
+    private TokenEpochRegistry registry;
+
+    @AfterEach
+    void tearDown() {
+        registry.destroy();
+    }
+
+    private TokenEpochRegistry registry(TokenEpochSource source) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if (source != null) {
+            beanFactory.addBean("tokenEpochSource", source);
+        }
+        // Long interval: the test drives poll() itself
+        return new TokenEpochRegistry(beanFactory.getBeanProvider(TokenEpochSource.class), Duration.ofHours(1),
+                900_000L);
+    }
+
+    @Test
+    void shouldRevokeTokensBelowPolledEpoch() {
+        registry = registry(since -> {
+            requestedSince.add(since);
+            return List.copyOf(revocations);
+        });
+        registry.start();
+        assertFalse(registry.isRevoked(userId, 0));
+
+        revocations.add(new TokenRevocation(userId, 2));
+        registry.poll();
+
+        assertTrue(registry.isRevoked(userId, 0));
+        assertTrue(registry.isRevoked(userId, 1));
+        assertFalse(registry.isRevoked(userId, 2));
+        assertFalse(registry.isRevoked(UUID.randomUUID(), 0));
+        // The first poll loads a whole token lifetime, later ones only what changed since
+        assertTrue(Duration.between(requestedSince.get(0), requestedSince.get(1)).compareTo(Duration.ofMinutes(14)) > 0);
+    }
+
+    @Test
+    void shouldKeepKnownEpochsWhenPollFails() {
+        registry = registry(since -> {
+            throw new IllegalStateException("down");
+        });
+        registry.revoke(userId, 1);
+
+        registry.poll();
+
+        assertTrue(registry.isRevoked(userId, 0));
+    }
+
+    @Test
+    void shouldRevokeNothingWithoutSource() {
+        registry = registry(null);
+        registry.start();
+
+        assertFalse(registry.isRevoked(userId, 0));
+        assertEquals(0, registry.size());
+    }
+}
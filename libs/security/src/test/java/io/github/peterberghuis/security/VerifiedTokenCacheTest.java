@@ -0,0 +1,73 @@
+package io.github.peterberghuis.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifiedTokenCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void get_ShouldVerifyOnlyOnce_WhenTokenIsRepeated() {
+        VerifiedTokenCache cache = newCache();
+        AtomicInteger verifications = new AtomicInteger();
+        Function<String, VerifiedToken> verifier = token -> {
+            verifications.incrementAndGet();
+            return new VerifiedToken("user", List.of("USER"), Instant.now(), Instant.now().plusSeconds(60));
+        };
+
+        VerifiedToken first = cache.get("token", verifier);
+        VerifiedToken second = cache.get("token", verifier);
+
+        assertSame(first, second);
+        assertEquals(1, verifications.get());
+        assertEquals(1, gets("hit"));
+        assertEquals(1, gets("miss"));
+    }
+
+    @Test
+    void get_ShouldNeverServeExpiredToken() {
+        VerifiedTokenCache cache = newCache();
+        AtomicInteger verifications = new AtomicInteger();
+        Function<String, VerifiedToken> verifier = token -> {
+            verifications.incrementAndGet();
+            return new VerifiedToken("user", List.of(), Instant.now(), Instant.now().minusMillis(1));
+        };
+
+        cache.get("token", verifier);
+        cache.get("token", verifier);
+
+        assertTrue(verifications.get() >= 2);
+    }
+
+    @Test
+    void get_ShouldNotCacheRejectedToken() {
+        VerifiedTokenCache cache = newCache();
+        Function<String, VerifiedToken> verifier = token -> {
+            throw new IllegalArgumentException("invalid");
+        };
+
+        assertThrows(IllegalArgumentException.class, () -> cache.get("token", verifier));
+        assertEquals(0, meterRegistry.get("cache.size").tag("cache", "jwt_verified_tokens").gauge().value());
+    }
+
+    private VerifiedTokenCache newCache() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+        return new VerifiedTokenCache(100, beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tags("cache", "jwt_verified_tokens", "result", result)
+                .functionCounter().count();
+    }
+}
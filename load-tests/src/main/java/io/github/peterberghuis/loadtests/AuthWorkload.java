@@ -0,0 +1,162 @@
+package io.github.peterberghuis.loadtests;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code api-tests/auth.http} flow as individual calls on a pool of accounts. A call takes an idle account and
+ * returns it when done, so one account never has two calls in flight, which refresh-token rotation would reject as
+ * reuse. An account without tokens, after a logout or a failed refresh, logs in on its next turn instead.
+ */
+final class AuthWorkload {
+
+    private static final String PASSWORD = "Password123!";
+    private static final JsonMapper JSON = JsonMapper.shared();
+
+    private final HttpClient client;
+    private final URI baseUri;
+    private final Duration requestTimeout;
+    // Accounts of earlier runs against the same target must not collide
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicInteger registered = new AtomicInteger();
+    private final Queue<Account> idle = new ConcurrentLinkedQueue<>();
+
+    AuthWorkload(HttpClient client, URI baseUri, Duration requestTimeout) {
+        this.client = client;
+        this.baseUri = baseUri;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Registers the initial accounts, a few at a time so the hashing pool is not overrun. Not measured.
+     */
+    void registerAccounts(int count) throws InterruptedException {
+        Semaphore concurrency = new Semaphore(Runtime.getRuntime().availableProcessors());
+        LoadReport unmeasured = new LoadReport();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < count; i++) {
+                concurrency.acquire();
+                executor.execute(() -> {
+                    try {
+                        // Retries what a busy hashing pool turns away
+                        for (int attempt = 1; !register(System.nanoTime(), unmeasured) && attempt < 20; attempt++) {
+                            Thread.sleep(100);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        concurrency.release();
+                    }
+                });
+            }
+        }
+        if (idle.size() < count) {
+            throw new IllegalStateException("Registered only " + idle.size() + " of " + count + " accounts");
+        }
+    }
+
+    /**
+     * @param scheduledAt {@link System#nanoTime()} the call was due, which its latency is measured from
+     */
+    void execute(Endpoint endpoint, long scheduledAt, LoadReport report) throws InterruptedException {
+        if (endpoint == Endpoint.REGISTER) {
+            register(scheduledAt, report);
+            return;
+        }
+        Account account = idle.poll();
+        if (account == null) {
+            report.dropped(endpoint);
+            return;
+        }
+        try {
+            if (account.accessToken == null || endpoint == Endpoint.LOGIN) {
+                tokens(account, send(Endpoint.LOGIN, Map.of("email", account.email, "password", PASSWORD), null,
+                        scheduledAt, report));
+            } else if (endpoint == Endpoint.REFRESH) {
+                tokens(account, send(Endpoint.REFRESH, Map.of("refreshToken", account.refreshToken), null,
+                        scheduledAt, report));
+            } else if (endpoint == Endpoint.ME) {
+                send(Endpoint.ME, null, account.accessToken, scheduledAt, report);
+            } else if (send(Endpoint.LOGOUT, null, account.accessToken, scheduledAt, report) != null) {
+                account.accessToken = null;
+            }
+        } finally {
+            idle.add(account);
+        }
+    }
+
+    private boolean register(long scheduledAt, LoadReport report) throws InterruptedException {
+        Account account = new Account("load-" + runId + "-" + registered.incrementAndGet() + "@example.com");
+        tokens(account, send(Endpoint.REGISTER, Map.of("email", account.email, "password", PASSWORD), null,
+                scheduledAt, report));
+        if (account.accessToken == null) {
+            return false;
+        }
+        idle.add(account);
+        return true;
+    }
+
+    /**
+     * Takes the tokens of an auth response; without one the account has to log in again.
+     */
+    private static void tokens(Account account, HttpResponse<byte[]> response) {
+        if (response == null) {
+            account.accessToken = null;
+            return;
+        }
+        JsonNode body = JSON.readTree(response.body());
+        account.accessToken = body.get("accessToken").asString();
+        account.refreshToken = body.get("refreshToken").asString();
+    }
+
+    /**
+     * @return the response if it was a 2xx, otherwise {@code null}
+     */
+    private HttpResponse<byte[]> send(Endpoint endpoint, Object body, String accessToken, long scheduledAt,
+                                      LoadReport report) throws InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUri.resolve(endpoint.path()))
+                .timeout(requestTimeout)
+                .method(endpoint.method(), body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(JSON.writeValueAsBytes(body)));
+        if (body != null) {
+            request.header("Content-Type", "application/json");
+        }
+        if (accessToken != null) {
+            request.header("Authorization", "Bearer " + accessToken);
+        }
+        try {
+            HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            report.record(endpoint, response.statusCode(), System.nanoTime() - scheduledAt);
+            return response.statusCode() / 100 == 2 ? response : null;
+        } catch (IOException e) {
+            report.record(endpoint, 0, System.nanoTime() - scheduledAt);
+            return null;
+        }
+    }
+
+    private static final class Account {
+
+        private final String email;
+        private String accessToken;
+        private String refreshToken;
+
+        private Account(String email) {
+            this.email = email;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.peterberghuis.loadtests;
+
+import java.util.Locale;
+
+/**
+ * The auth-service calls of {@code api-tests/auth.http}, as driven by {@link AuthWorkload}.
+ */
+enum Endpoint {
+
+    REGISTER("POST", "/api/v1/auth/register"),
+    LOGIN("POST", "/api/v1/auth/login"),
+    REFRESH("POST", "/api/v1/auth/refresh"),
+    ME("GET", "/api/v1/auth/me"),
+    LOGOUT("POST", "/api/v1/auth/logout");
+
+    private final String method;
+    private final String path;
+
+    Endpoint(String method, String path) {
+        this.method = method;
+        this.path = path;
+    }
+
+    String method() {
+        return method;
+    }
+
+    String path() {
+        return path;
+    }
+
+    /**
+     * The name used in {@code loadtest.mix} and in results.
+     */
+    String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static Endpoint fromKey(String key) {
+        return valueOf(key.trim().toUpperCase(Locale.ROOT));
+    }
+}
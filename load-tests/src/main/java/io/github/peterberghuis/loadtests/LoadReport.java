@@ -0,0 +1,92 @@
+package io.github.peterberghuis.loadtests;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and response codes per endpoint for one phase of a run. Recording is wait-free, so it does not skew the
+ * latencies it records.
+ */
+final class LoadReport {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+
+    LoadReport() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new EndpointStats());
+        }
+    }
+
+    /**
+     * @param status the HTTP status, or 0 when no response arrived
+     * @param nanos  from when the request was scheduled, not sent, so a stalled server shows up in the latencies
+     */
+    void record(Endpoint endpoint, int status, long nanos) {
+        EndpointStats endpointStats = stats.get(endpoint);
+        endpointStats.latencies.recordValue(Math.min(Math.max(nanos, 1), MAX_LATENCY_NANOS));
+        endpointStats.statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * A scheduled request that was never sent: too many in flight, or no idle account to send it for.
+     */
+    void dropped(Endpoint endpoint) {
+        stats.get(endpoint).dropped.increment();
+    }
+
+    LoadTestResult toResult(double rate, WorkloadMix mix, Duration duration) {
+        double seconds = duration.toNanos() / 1e9;
+        Map<String, LoadTestResult.EndpointResult> endpoints = new LinkedHashMap<>();
+        stats.forEach((endpoint, endpointStats) -> {
+            Histogram histogram = endpointStats.latencies.getIntervalHistogram();
+            long dropped = endpointStats.dropped.sum();
+            if (histogram.getTotalCount() == 0 && dropped == 0) {
+                return;
+            }
+            Map<String, Long> statuses = new TreeMap<>();
+            long errors = 0;
+            for (Map.Entry<Integer, LongAdder> entry : endpointStats.statuses.entrySet()) {
+                int status = entry.getKey();
+                long count = entry.getValue().sum();
+                statuses.put(status == 0 ? "none" : String.valueOf(status), count);
+                if (status < 200 || status >= 300) {
+                    errors += count;
+                }
+            }
+            endpoints.put(endpoint.key(), new LoadTestResult.EndpointResult(
+                    histogram.getTotalCount(),
+                    (histogram.getTotalCount() - errors) / seconds,
+                    errors,
+                    dropped,
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()),
+                    statuses));
+        });
+        return new LoadTestResult(rate, mix.toString(), duration.toSeconds(), endpoints);
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e4) / 100.0;
+    }
+
+    private static final class EndpointStats {
+
+        private final Recorder latencies = new Recorder(MAX_LATENCY_NANOS, 3);
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final LongAdder dropped = new LongAdder();
+    }
+}
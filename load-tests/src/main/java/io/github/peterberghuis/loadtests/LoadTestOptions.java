@@ -0,0 +1,59 @@
+package io.github.peterberghuis.loadtests;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Run settings, read from {@code -Dloadtest.*} system properties like the benchmarks read theirs.
+ *
+ * @param target       a running instance to drive; {@code null} starts auth-service locally
+ * @param serviceJar   the auth-service jar started when there is no target
+ * @param jdbcUrl      database for the local instance; {@code null} starts an embedded Postgres
+ * @param rate         requests per second, issued on schedule whether or not earlier ones have answered
+ * @param maxInFlight  requests allowed outstanding; past that, scheduled requests are counted as dropped
+ * @param tolerance    relative change against the baseline reported as a regression
+ */
+record LoadTestOptions(URI target,
+                       Path serviceJar,
+                       List<String> jvmOptions,
+                       String jdbcUrl,
+                       String jdbcUser,
+                       String jdbcPassword,
+                       double rate,
+                       Duration warmup,
+                       Duration duration,
+                       int users,
+                       WorkloadMix mix,
+                       int maxInFlight,
+                       Duration requestTimeout,
+                       Path result,
+                       Path baseline,
+                       boolean saveBaseline,
+                       double tolerance) {
+
+    static LoadTestOptions fromSystemProperties() {
+        String target = System.getProperty("loadtest.target");
+        String serviceJar = System.getProperty("loadtest.service-jar");
+        String jvmOptions = System.getProperty("loadtest.jvm-options", "").trim();
+        return new LoadTestOptions(
+                target == null ? null : URI.create(target),
+                serviceJar == null ? null : Path.of(serviceJar),
+                jvmOptions.isEmpty() ? List.of() : List.of(jvmOptions.split("\\s+")),
+                System.getProperty("loadtest.jdbc.url"),
+                System.getProperty("loadtest.jdbc.user", "myuser"),
+                System.getProperty("loadtest.jdbc.password", "secret"),
+                Double.parseDouble(System.getProperty("loadtest.rate", "200")),
+                Duration.parse("PT" + System.getProperty("loadtest.warmup", "30s")),
+                Duration.parse("PT" + System.getProperty("loadtest.duration", "60s")),
+                Integer.getInteger("loadtest.users", 500),
+                WorkloadMix.parse(System.getProperty("loadtest.mix", "me:60,refresh:20,login:10,register:5,logout:5")),
+                Integer.getInteger("loadtest.max-in-flight", 1000),
+                Duration.parse("PT" + System.getProperty("loadtest.request-timeout", "10s")),
+                Path.of(System.getProperty("loadtest.result", "load-test-result.json")),
+                Path.of(System.getProperty("loadtest.baseline", "load-test-baseline.json")),
+                Boolean.getBoolean("loadtest.save-baseline"),
+                Double.parseDouble(System.getProperty("loadtest.tolerance", "0.2")));
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.peterberghuis.loadtests;
+
+import java.io.PrintStream;
+import java.util.Map;
+
+/**
+ * What a run measured, written as JSON after every run and kept as the baseline later runs are compared against.
+ *
+ * @param rate the target rate in requests per second
+ */
+record LoadTestResult(double rate, String mix, long durationSeconds, Map<String, EndpointResult> endpoints) {
+
+    /**
+     * @param throughput successful responses per second
+     * @param errors     responses other than 2xx, and requests that got no response
+     * @param dropped    scheduled requests that were never sent
+     */
+    record EndpointResult(long count,
+                          double throughput,
+                          long errors,
+                          long dropped,
+                          double p50Millis,
+                          double p90Millis,
+                          double p99Millis,
+                          double p999Millis,
+                          double maxMillis,
+                          Map<String, Long> statuses) {
+
+        double failureRatio() {
+            long attempts = count + dropped;
+            return attempts == 0 ? 0 : (double) (errors + dropped) / attempts;
+        }
+    }
+
+    void print(PrintStream out) {
+        out.printf("%n%-10s %8s %9s %7s %8s %9s %9s %9s %9s %9s  %s%n", "endpoint", "count", "ok/s", "errors",
+                "dropped", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "statuses");
+        endpoints.forEach((endpoint, result) -> out.printf("%-10s %8d %9.1f %7d %8d %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                endpoint, result.count(), result.throughput(), result.errors(), result.dropped(), result.p50Millis(),
+                result.p90Millis(), result.p99Millis(), result.p999Millis(), result.maxMillis(), result.statuses()));
+    }
+
+    /**
+     * Prints the change of each endpoint's throughput, p99 and failure ratio against the baseline.
+     *
+     * @return whether throughput or p99 got worse by more than {@code tolerance}, or failures rose by more than one
+     * percentage point
+     */
+    boolean compareTo(LoadTestResult baseline, double tolerance, PrintStream out) {
+        if (baseline.rate() != rate || !baseline.mix().equals(mix)) {
+            out.printf("%nBaseline ran at %.1f/s with %s, this run at %.1f/s with %s: the comparison is indicative only%n",
+                    baseline.rate(), baseline.mix(), rate, mix);
+        }
+        out.printf("%n%-10s %18s %18s %18s%n", "vs base", "ok/s", "p99 ms", "failures");
+        boolean regressed = false;
+        for (Map.Entry<String, EndpointResult> entry : endpoints.entrySet()) {
+            EndpointResult current = entry.getValue();
+            EndpointResult base = baseline.endpoints().get(entry.getKey());
+            if (base == null) {
+                out.printf("%-10s %18s%n", entry.getKey(), "not in baseline");
+                continue;
+            }
+            boolean slower = current.throughput() < base.throughput() * (1 - tolerance);
+            boolean laggier = current.p99Millis() > base.p99Millis() * (1 + tolerance);
+            boolean failing = current.failureRatio() > base.failureRatio() + 0.01;
+            out.printf("%-10s %18s %18s %18s%s%n", entry.getKey(),
+                    change(base.throughput(), current.throughput()),
+                    change(base.p99Millis(), current.p99Millis()),
+                    String.format("%.2f%% -> %.2f%%", base.failureRatio() * 100, current.failureRatio() * 100),
+                    slower || laggier || failing ? "  REGRESSION" : "");
+            regressed |= slower || laggier || failing;
+        }
+        return regressed;
+    }
+
+    private static String change(double base, double current) {
+        return base == 0 ? String.format("%.1f", current)
+                : String.format("%.1f (%+.0f%%)", current, (current - base) / base * 100);
+    }
+}
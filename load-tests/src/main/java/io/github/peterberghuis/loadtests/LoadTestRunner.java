@@ -0,0 +1,120 @@
+package io.github.peterberghuis.loadtests;
+
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Entry point of {@code load-tests.jar}: drives auth-service with a mixed workload at a fixed rate, prints throughput
+ * and latency percentiles per endpoint, and compares them with the saved baseline.
+ * <p>
+ * Requests are issued on schedule whatever the latency of earlier ones (an open model, like real clients) and their
+ * latency counts from when they were due, so a stalled server is not hidden by a load generator waiting on it. A run
+ * is warmup, then measurement; only the latter is reported.
+ */
+public final class LoadTestRunner {
+
+    private static final JsonMapper JSON = JsonMapper.builder().enable(SerializationFeature.INDENT_OUTPUT).build();
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.fromSystemProperties();
+        boolean regressed;
+        try (LocalAuthService service = options.target() == null ? LocalAuthService.start(options) : null) {
+            URI target = service != null ? service.baseUri() : options.target();
+            regressed = run(options, target);
+        }
+        if (regressed) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean run(LoadTestOptions options, URI target) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(options.requestTimeout())
+                    .executor(executor)
+                    .build();
+            AuthWorkload workload = new AuthWorkload(client, target, options.requestTimeout());
+
+            System.out.printf("Registering %d accounts on %s%n", options.users(), target);
+            workload.registerAccounts(options.users());
+
+            System.out.printf("Warming up for %ds at %.1f requests/s (%s)%n", options.warmup().toSeconds(),
+                    options.rate(), options.mix());
+            drive(workload, options, options.warmup(), new LoadReport());
+
+            System.out.printf("Measuring for %ds%n", options.duration().toSeconds());
+            LoadReport report = new LoadReport();
+            drive(workload, options, options.duration(), report);
+
+            LoadTestResult result = report.toResult(options.rate(), options.mix(), options.duration());
+            result.print(System.out);
+            JSON.writeValue(options.result().toFile(), result);
+            return compareWithBaseline(result, options);
+        }
+    }
+
+    /**
+     * Issues requests every {@code 1 / rate} seconds for {@code length}, then waits for the outstanding ones.
+     */
+    private static void drive(AuthWorkload workload, LoadTestOptions options, Duration length, LoadReport report) {
+        long interval = (long) (1e9 / options.rate());
+        Semaphore inFlight = new Semaphore(options.maxInFlight());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            long end = start + length.toNanos();
+            for (long scheduledAt = start; scheduledAt - end < 0; scheduledAt += interval) {
+                long delay = scheduledAt - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                Endpoint endpoint = options.mix().next();
+                if (!inFlight.tryAcquire()) {
+                    report.dropped(endpoint);
+                    continue;
+                }
+                long due = scheduledAt;
+                executor.execute(() -> {
+                    try {
+                        workload.execute(endpoint, due, report);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Saves the result as the baseline when there is none yet or {@code loadtest.save-baseline} is set, otherwise
+     * compares against it.
+     *
+     * @return whether the comparison found a regression
+     */
+    private static boolean compareWithBaseline(LoadTestResult result, LoadTestOptions options) throws Exception {
+        if (options.saveBaseline() || !Files.exists(options.baseline())) {
+            JSON.writeValue(options.baseline().toFile(), result);
+            System.out.printf("%nSaved as baseline: %s%n", options.baseline().toAbsolutePath());
+            return false;
+        }
+        LoadTestResult baseline = JSON.readValue(options.baseline().toFile(), LoadTestResult.class);
+        boolean regressed = result.compareTo(baseline, options.tolerance(), System.out);
+        System.out.printf("%n%s against %s (tolerance %.0f%%)%n", regressed ? "REGRESSED" : "Within baseline",
+                options.baseline().toAbsolutePath(), options.tolerance() * 100);
+        return regressed;
+    }
+}
@@ -0,0 +1,152 @@
+package io.github.peterberghuis.loadtests;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * An auth-service jar started in its own JVM, on a free port, against an embedded Postgres (or
+ * {@code loadtest.jdbc.url}). Its schema is created by Liquibase on startup, so an embedded database starts every run
+ * from the same empty state.
+ * <p>
+ * It runs the {@code local} profile with SQL logging off, without a Google issuer lookup (no network needed) and with
+ * login throttling off, since every simulated user logs in from the same address.
+ */
+final class LocalAuthService implements AutoCloseable {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private final EmbeddedPostgres postgres;
+    private final Process process;
+    private final URI baseUri;
+    private final Path log;
+
+    private LocalAuthService(EmbeddedPostgres postgres, Process process, URI baseUri, Path log) {
+        this.postgres = postgres;
+        this.process = process;
+        this.baseUri = baseUri;
+        this.log = log;
+    }
+
+    static LocalAuthService start(LoadTestOptions options) throws IOException, InterruptedException {
+        Path jar = options.serviceJar() != null ? options.serviceJar() : findServiceJar();
+        EmbeddedPostgres postgres = options.jdbcUrl() == null ? EmbeddedPostgres.builder().start() : null;
+        try {
+            int port = freePort();
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(options.jvmOptions());
+            command.addAll(List.of("-jar", jar.toString(),
+                    "--server.port=" + port,
+                    "--spring.datasource.url=" + (postgres != null
+                            ? postgres.getJdbcUrl("postgres", "postgres") : options.jdbcUrl()),
+                    "--spring.datasource.username=" + (postgres != null ? "postgres" : options.jdbcUser()),
+                    "--spring.datasource.password=" + (postgres != null ? "postgres" : options.jdbcPassword()),
+                    "--spring.jpa.show-sql=false",
+                    "--logging.level.io.github.peterberghuis=INFO",
+                    "--logging.level.org.hibernate.SQL=INFO",
+                    "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO",
+                    // Points the Google registration at a provider without an issuer, so startup does not fetch
+                    // Google's discovery document. The OAuth2 login flow is not part of the workload.
+                    "--spring.security.oauth2.client.registration.google.provider=offline",
+                    "--spring.security.oauth2.client.registration.google.authorization-grant-type=authorization_code",
+                    "--spring.security.oauth2.client.registration.google.redirect-uri="
+                            + "{baseUrl}/login/oauth2/code/{registrationId}",
+                    "--spring.security.oauth2.client.provider.offline.authorization-uri=http://localhost/authorize",
+                    "--spring.security.oauth2.client.provider.offline.token-uri=http://localhost/token",
+                    "--auth.login-throttle.enabled=false"));
+
+            Path log = Files.createTempFile("auth-service-", ".log");
+            ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile());
+            builder.environment().putIfAbsent("GOOGLE_CLIENT_SECRET", "load-test");
+            System.out.printf("Starting %s on port %d, log: %s%n", jar, port, log);
+
+            LocalAuthService service =
+                    new LocalAuthService(postgres, builder.start(), URI.create("http://localhost:" + port), log);
+            try {
+                service.awaitHealthy();
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                service.close();
+                throw e;
+            }
+            return service;
+        } catch (IOException | RuntimeException e) {
+            if (postgres != null) {
+                postgres.close();
+            }
+            throw e;
+        }
+    }
+
+    URI baseUri() {
+        return baseUri;
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        try {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        } finally {
+            if (postgres != null) {
+                postgres.close();
+            }
+        }
+    }
+
+    private void awaitHealthy() throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest health = HttpRequest.newBuilder(baseUri.resolve("/actuator/health"))
+                .timeout(Duration.ofSeconds(2))
+                .build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("auth-service exited with " + process.exitValue() + ", see " + log);
+            }
+            try {
+                if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("auth-service not healthy after " + STARTUP_TIMEOUT + ", see " + log);
+    }
+
+    private static Path findServiceJar() throws IOException {
+        Path target = Path.of("services", "auth-service", "target");
+        try (Stream<Path> files = Files.list(target)) {
+            return files.filter(file -> file.getFileName().toString().matches("auth-service-.*\\.jar"))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No auth-service jar in " + target.toAbsolutePath()
+                            + ", build it first or set -Dloadtest.service-jar"));
+        } catch (NoSuchFileException e) {
+            throw new IllegalStateException("No " + target.toAbsolutePath()
+                    + ", run from the repository root or set -Dloadtest.service-jar", e);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.peterberghuis.loadtests;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Weighted choice of the next endpoint, parsed from {@code me:60,refresh:20,login:10,register:5,logout:5}.
+ */
+final class WorkloadMix {
+
+    private final Endpoint[] endpoints;
+    private final int[] cumulativeWeights;
+    private final Map<Endpoint, Integer> weights;
+
+    private WorkloadMix(Map<Endpoint, Integer> weights) {
+        this.weights = weights;
+        this.endpoints = weights.keySet().toArray(Endpoint[]::new);
+        this.cumulativeWeights = new int[endpoints.length];
+        int total = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            total += weights.get(endpoints[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Workload mix needs a positive weight");
+        }
+    }
+
+    static WorkloadMix parse(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected endpoint:weight, got " + entry);
+            }
+            weights.put(Endpoint.fromKey(parts[0]), Integer.parseInt(parts[1].trim()));
+        }
+        return new WorkloadMix(weights);
+    }
+
+    Endpoint next() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return endpoints[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        weights.forEach((endpoint, weight) ->
+                result.append(result.isEmpty() ? "" : ",").append(endpoint.key()).append(':').append(weight));
+        return result.toString();
+    }
+}
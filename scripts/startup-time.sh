@@ -0,0 +1,46 @@
+#!/usr/bin/env bash
+# Starts a service several times and reports how long Spring Boot took to get ready, as the
+# "process running for" figure of its "Started ... in" log line (JVM start included).
+#
+#   scripts/startup-time.sh [-n runs] -- <command starting the service in the foreground>
+#
+# e.g. scripts/startup-time.sh -n 5 -- docker run --rm --network host -e GOOGLE_CLIENT_SECRET=x tanuki/auth-service:aot-cache
+set -euo pipefail
+
+runs=5
+while [[ $# -gt 0 && $1 != "--" ]]; do
+  case $1 in
+    -n) runs=$2; shift 2 ;;
+    *) echo "usage: $0 [-n runs] -- command..." >&2; exit 2 ;;
+  esac
+done
+shift
+[[ $# -gt 0 ]] || { echo "usage: $0 [-n runs] -- command..." >&2; exit 2; }
+
+log=$(mktemp)
+trap 'rm -f "$log"' EXIT
+times=()
+for ((i = 1; i <= runs; i++)); do
+  "$@" >"$log" 2>&1 &
+  pid=$!
+  seconds=""
+  for ((wait = 0; wait < 1200; wait++)); do
+    seconds=$(sed -n 's/.*Started .* in .* seconds (process running for \([0-9.]*\)).*/\1/p' "$log" | head -n 1)
+    [[ -n $seconds ]] && break
+    kill -0 "$pid" 2>/dev/null || break
+    sleep 0.1
+  done
+  # docker run forwards the signal to the container
+  kill "$pid" 2>/dev/null || true
+  wait "$pid" 2>/dev/null || true
+  if [[ -z $seconds ]]; then
+    echo "run $i: did not start, last output:" >&2
+    tail -n 20 "$log" >&2
+    exit 1
+  fi
+  echo "run $i: ${seconds}s"
+  times+=("$seconds")
+done
+printf '%s\n' "${times[@]}" | sort -n | awk '{ t[NR] = $1 } END {
+  printf "min %.3fs  median %.3fs  max %.3fs over %d runs\n", t[1], (NR % 2 ? t[(NR + 1) / 2] : (t[NR / 2] + t[NR / 2 + 1]) / 2), t[NR], NR
+}'
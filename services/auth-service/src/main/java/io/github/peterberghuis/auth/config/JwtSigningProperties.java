@@ -0,0 +1,40 @@
+package io.github.peterberghuis.auth.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "jwt.signing")
+public class JwtSigningProperties {
+
+    /**
+     * kid of the key new tokens are signed with. Tokens are signed with {@code jwt.secret} while this is empty.
+     */
+    private String activeKid;
+
+    /**
+     * All published keys: the active one, retired ones whose tokens have not expired yet, and the next one.
+     */
+    private List<Key> keys = new ArrayList<>();
+
+    @Setter
+    @Getter
+    public static class Key {
+        private String kid;
+        /**
+         * PKCS#8 EC P-256 or Ed25519 private key, PEM or bare Base64. Leave empty for verification-only keys.
+         */
+        private String privateKey;
+        /**
+         * X.509 SubjectPublicKeyInfo public key, PEM or bare Base64.
+         */
+        private String publicKey;
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.peterberghuis.auth.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "auth.login-throttle")
+public class LoginThrottleProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Attempts per email address, whichever client they come from.
+     */
+    private Bucket email = new Bucket(5, Duration.ofMinutes(1));
+
+    /**
+     * Attempts per client address, whichever emails they are for. Larger than the email bucket because offices and
+     * mobile carriers put many users behind one address.
+     */
+    private Bucket ip = new Bucket(30, Duration.ofSeconds(2));
+
+    /**
+     * Upper bound on buckets held per key type. Past it the least recently used are dropped.
+     */
+    private long maximumSize = 100_000;
+
+    @Setter
+    @Getter
+    public static class Bucket {
+
+        /**
+         * Attempts allowed in a burst.
+         */
+        private int capacity;
+
+        /**
+         * Time to earn back one attempt.
+         */
+        private Duration refillInterval;
+
+        public Bucket() {
+        }
+
+        public Bucket(int capacity, Duration refillInterval) {
+            this.capacity = capacity;
+            this.refillInterval = refillInterval;
+        }
+    }
+}
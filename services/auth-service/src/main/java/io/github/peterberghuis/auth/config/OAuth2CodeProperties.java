@@ -0,0 +1,36 @@
+package io.github.peterberghuis.auth.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "auth.oauth2-code")
+public class OAuth2CodeProperties {
+
+    /**
+     * Where one-time codes live between the OAuth2 redirect and the exchange. {@code memory} only works when both
+     * requests reach the same instance.
+     */
+    private Store store = Store.DATABASE;
+
+    /**
+     * How long a code can be exchanged after it was issued.
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+
+    /**
+     * Upper bound on unexchanged codes held by the in-memory store.
+     */
+    private long maximumSize = 100_000;
+
+    public enum Store {
+        MEMORY,
+        DATABASE
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.peterberghuis.auth.config;
+
+import io.github.peterberghuis.auth.security.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+@Configuration
+public class PasswordHashingConfig {
+
+    /**
+     * Takes password hashing off the request threads, see {@link BoundedPasswordEncoder}.
+     */
+    @Bean
+    @Primary
+    public BoundedPasswordEncoder boundedPasswordEncoder(@Qualifier("passwordEncoder") PasswordEncoder passwordEncoder,
+                                                         PasswordHashingProperties properties,
+                                                         MeterRegistry meterRegistry) {
+        return new BoundedPasswordEncoder(passwordEncoder, properties.getEffectiveThreads(),
+                properties.getQueueCapacity(), properties.getRetryAfter(), meterRegistry);
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.peterberghuis.auth.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "auth.password-hashing")
+public class PasswordHashingProperties {
+
+    /**
+     * Threads hashing and verifying passwords. 0 uses one per available CPU.
+     */
+    private int threads;
+
+    /**
+     * Hashes allowed to wait for a thread. Further requests are rejected with 503 instead of queueing.
+     */
+    private int queueCapacity = 16;
+
+    /**
+     * Sent as Retry-After on rejected requests.
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    public int getEffectiveThreads() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.peterberghuis.auth.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "auth.purge")
+public class PurgeProperties {
+
+    /**
+     * Whether this instance takes part in purging expired refresh tokens and OAuth2 codes.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Delay between the end of one run and the start of the next.
+     */
+    private Duration interval = Duration.ofMinutes(5);
+
+    /**
+     * Rows deleted per statement. Each chunk is its own transaction, keeping locks and write intents short.
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * Chunks per table per run. What is left over is picked up by the next run.
+     */
+    private int maxChunks = 100;
+
+    /**
+     * How long the instance that ran last keeps the job. Another instance takes over once it lapses, so keep it
+     * longer than {@code interval}.
+     */
+    private Duration leaseDuration = Duration.ofMinutes(10);
+}
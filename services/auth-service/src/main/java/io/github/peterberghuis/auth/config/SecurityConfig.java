@@ -2,10 +2,15 @@ package io.github.peterberghuis.auth.config;
 
 import io.github.peterberghuis.auth.security.OAuth2AuthenticationSuccessHandler;
 import io.github.peterberghuis.security.JwtAuthenticationFilter;
+import io.github.peterberghuis.security.ManagementPort;
+import io.github.peterberghuis.security.PublicRoutes;
+import io.github.peterberghuis.security.ServiceToken;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -23,8 +28,26 @@ public class SecurityConfig {
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
     private final OAuth2AuthenticationSuccessHandler oAuth2AuthenticationSuccessHandler;
 
+    // Other services' RemoteTokenEpochSource sends it; the feed lists user ids with recent logouts
+    @Value("${jwt.revocation.service-token:}")
+    private String revocationServiceToken;
+
+    /**
+     * Replaces the library default. Static for the same reason: {@link JwtAuthenticationFilter} depends on it.
+     */
+    @Bean
+    public static PublicRoutes publicRoutes() {
+        return PublicRoutes.builder()
+                .post("/api/v1/auth/login", "/api/v1/auth/register", "/api/v1/auth/refresh",
+                        "/api/v1/auth/oauth2/exchange")
+                .get("/.well-known/jwks.json")
+                .any("/actuator/health", "/oauth2/**", "/login/oauth2/**")
+                .build();
+    }
+
     @Bean
-    public SecurityFilterChain authServiceSecurityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain authServiceSecurityFilterChain(HttpSecurity http, PublicRoutes publicRoutes,
+                                                              Environment environment) throws Exception {
         http
                 .cors(Customizer.withDefaults())
                 .csrf(AbstractHttpConfigurer::disable)
@@ -34,9 +57,10 @@ public class SecurityConfig {
                                 res.sendError(HttpServletResponse.SC_UNAUTHORIZED))
                 )
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers(HttpMethod.POST, "/api/v1/auth/login", "/api/v1/auth/register", "/api/v1/auth/refresh", "/api/v1/auth/oauth2/exchange").permitAll()
-                        .requestMatchers("/actuator/health").permitAll()
-                        .requestMatchers("/oauth2/**", "/login/oauth2/**").permitAll()
+                        .requestMatchers(publicRoutes.requestMatchers()).permitAll()
+                        .requestMatchers(ManagementPort.requestMatcher(environment)).permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/v1/auth/revocations")
+                        .access(ServiceToken.required(revocationServiceToken))
                         .anyRequest().authenticated()
                 )
                 .oauth2Login(oauth2 -> oauth2
@@ -3,9 +3,14 @@ package io.github.peterberghuis.auth.controller;
 
 import io.github.peterberghuis.auth.api.AuthControllerApi;
 import io.github.peterberghuis.auth.dto.*;
+import io.github.peterberghuis.auth.service.AuthMetrics;
 import io.github.peterberghuis.auth.service.AuthService;
+import io.github.peterberghuis.auth.service.LoginThrottle;
+import io.github.peterberghuis.security.TokenUser;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -16,37 +21,48 @@ import java.util.Objects;
 public class AuthController implements AuthControllerApi {
 
     private final AuthService authService;
+    private final AuthMetrics authMetrics;
+    private final LoginThrottle loginThrottle;
+    // Proxy to the current request. Its remote address is the nearest untrusted hop, see server.tomcat.remoteip
+    private final HttpServletRequest request;
 
     @Override
     public ResponseEntity<AuthResponse> register(RegisterRequest registerRequest) {
-        return ResponseEntity.ok(authService.register(registerRequest));
+        return ResponseEntity.ok(authMetrics.record("register", () -> authService.register(registerRequest)));
     }
 
     @Override
     public ResponseEntity<AuthResponse> login(LoginRequest loginRequest) {
-        return ResponseEntity.ok(authService.login(loginRequest));
+        return ResponseEntity.ok(authMetrics.record("login", () -> {
+            loginThrottle.acquire(loginRequest.getEmail(), request.getRemoteAddr());
+            return authService.login(loginRequest);
+        }));
     }
 
     @Override
     public ResponseEntity<AuthResponse> refresh(RefreshRequest refreshRequest) {
-        return ResponseEntity.ok(authService.refresh(refreshRequest));
+        return ResponseEntity.ok(authMetrics.record("refresh", () -> authService.refresh(refreshRequest)));
     }
 
     @Override
     public ResponseEntity<AuthResponse> exchangeOAuth2Code(ExchangeOAuth2CodeRequest exchangeOAuth2CodeRequest) {
-        return ResponseEntity.ok(authService.exchangeCode(exchangeOAuth2CodeRequest.getCode()));
+        return ResponseEntity.ok(authMetrics.record("exchange_code",
+                () -> authService.exchangeCode(exchangeOAuth2CodeRequest.getCode())));
     }
 
     @Override
     public ResponseEntity<UserResponse> me() {
-        String email = Objects.requireNonNull(SecurityContextHolder.getContext().getAuthentication()).getName();
-        return ResponseEntity.ok(authService.me(email));
+        Authentication authentication = Objects.requireNonNull(SecurityContextHolder.getContext().getAuthentication());
+        if (authentication.getPrincipal() instanceof TokenUser user) {
+            return ResponseEntity.ok(authMetrics.record("me", () -> authService.me(user)));
+        }
+        return ResponseEntity.ok(authMetrics.record("me", () -> authService.me(authentication.getName())));
     }
 
     @Override
     public ResponseEntity<Void> logout() {
         String email = Objects.requireNonNull(SecurityContextHolder.getContext().getAuthentication()).getName();
-        authService.logout(email);
+        authMetrics.record("logout", () -> authService.logout(email));
         return ResponseEntity.noContent().build();
     }
 }
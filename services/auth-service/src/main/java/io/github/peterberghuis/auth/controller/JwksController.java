@@ -0,0 +1,46 @@
+package io.github.peterberghuis.auth.controller;
+
+import io.github.peterberghuis.auth.api.JwksControllerApi;
+import io.github.peterberghuis.auth.dto.JwkSetResponse;
+import io.github.peterberghuis.security.SigningKey;
+import io.github.peterberghuis.security.SigningKeyProvider;
+import io.jsonwebtoken.security.Jwks;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+public class JwksController implements JwksControllerApi {
+
+    // Verifiers refresh ahead of this, so a newly published key reaches them well before it becomes active
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic();
+
+    private final JwkSetResponse jwkSet;
+
+    public JwksController(ObjectProvider<SigningKeyProvider> signingKeyProvider) {
+        SigningKeyProvider provider = signingKeyProvider.getIfAvailable();
+        List<SigningKey> keys = provider != null ? provider.publishedKeys() : List.of();
+        this.jwkSet = new JwkSetResponse(keys.stream().map(JwksController::toJwk).toList());
+    }
+
+    @Override
+    public ResponseEntity<JwkSetResponse> getJwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CACHE_CONTROL)
+                .body(jwkSet);
+    }
+
+    private static Map<String, Object> toJwk(SigningKey key) {
+        return new LinkedHashMap<>(Jwks.builder()
+                .key(key.publicKey())
+                .id(key.kid())
+                .publicKeyUse("sig")
+                .build());
+    }
+}
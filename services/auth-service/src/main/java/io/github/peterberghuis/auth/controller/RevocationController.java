@@ -0,0 +1,35 @@
+package io.github.peterberghuis.auth.controller;
+
+import io.github.peterberghuis.auth.api.RevocationControllerApi;
+import io.github.peterberghuis.auth.dto.TokenRevocation;
+import io.github.peterberghuis.auth.dto.TokenRevocationsResponse;
+import io.github.peterberghuis.auth.security.DatabaseTokenEpochSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+@RestController
+public class RevocationController implements RevocationControllerApi {
+
+    private final DatabaseTokenEpochSource tokenEpochSource;
+    private final long accessTokenLifetimeMillis;
+
+    public RevocationController(DatabaseTokenEpochSource tokenEpochSource,
+                                @Value("${jwt.expiration}") long accessTokenLifetimeMillis) {
+        this.tokenEpochSource = tokenEpochSource;
+        this.accessTokenLifetimeMillis = accessTokenLifetimeMillis;
+    }
+
+    @Override
+    public ResponseEntity<TokenRevocationsResponse> getRevocations(OffsetDateTime since) {
+        // Older revocations only concern tokens that have expired anyway
+        Instant oldest = Instant.now().minusMillis(accessTokenLifetimeMillis);
+        Instant from = since.toInstant().isBefore(oldest) ? oldest : since.toInstant();
+        return ResponseEntity.ok(new TokenRevocationsResponse(tokenEpochSource.revokedSince(from).stream()
+                .map(revocation -> new TokenRevocation(revocation.userId(), revocation.epoch()))
+                .toList()));
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.peterberghuis.auth.entity;
+
+import java.util.UUID;
+
+/**
+ * Entity whose primary key is assigned by {@link IdAssigner} when it is first persisted.
+ */
+public interface GeneratedId {
+
+    UUID getId();
+
+    void setId(UUID id);
+}
@@ -0,0 +1,27 @@
+package io.github.peterberghuis.auth.entity;
+
+import io.github.peterberghuis.common.id.IdGenerator;
+import jakarta.persistence.PrePersist;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Entity listener giving {@link GeneratedId} entities a key from the configured {@link IdGenerator} on persist.
+ * Entities keep a {@code null} id until then, so {@code save} still treats them as new and inserts without a select.
+ */
+@Component
+public class IdAssigner {
+
+    private final ObjectProvider<IdGenerator> idGenerator;
+
+    public IdAssigner(ObjectProvider<IdGenerator> idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    @PrePersist
+    void assignId(Object entity) {
+        if (entity instanceof GeneratedId generated && generated.getId() == null) {
+            generated.setId(idGenerator.getObject().next());
+        }
+    }
+}
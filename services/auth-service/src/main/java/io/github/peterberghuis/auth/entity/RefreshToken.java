@@ -10,10 +10,11 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "refresh_tokens", schema = "auth_schema")
+@EntityListeners(IdAssigner.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class RefreshToken {
+public class RefreshToken implements GeneratedId {
 
     @Id
     private UUID id;
@@ -27,11 +28,4 @@ public class RefreshToken {
 
     @Column(name = "expiry_date", nullable = false)
     private Instant expiryDate;
-
-    @PrePersist
-    protected void onCreate() {
-        if (id == null) {
-            id = UUID.randomUUID();
-        }
-    }
 }
@@ -6,16 +6,17 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.Set;
 import java.util.UUID;
 
 @Entity
 @Table(name = "users", schema = "auth_schema")
+@EntityListeners({IdAssigner.class, UserWriteListener.class})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class User {
+public class User implements GeneratedId {
 
     @Id
     private UUID id;
@@ -33,21 +34,17 @@ public class User {
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
-    @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(
-            name = "user_roles",
-            schema = "auth_schema",
-            joinColumns = @JoinColumn(name = "user_id")
-    )
-    @Column(name = "role")
-    @Enumerated(EnumType.STRING)
-    private Set<UserRole> roles = new HashSet<>();
+    // Starts at the column default; changed by UserRepository#revokeTokens and by the trigger that revokes tokens
+    // when the status leaves ACTIVE (changelog 006)
+    @Column(name = "token_epoch", nullable = false, insertable = false, updatable = false)
+    private long tokenEpoch;
+
+    @Convert(converter = UserRolesConverter.class)
+    @Column(nullable = false)
+    private Set<UserRole> roles = EnumSet.noneOf(UserRole.class);
 
     @PrePersist
     protected void onCreate() {
-        if (id == null) {
-            id = UUID.randomUUID();
-        }
         if (createdAt == null) {
             createdAt = LocalDateTime.now();
         }
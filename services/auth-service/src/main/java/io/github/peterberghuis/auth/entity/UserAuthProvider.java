@@ -9,13 +9,13 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "user_auth_providers", schema = "auth_schema")
+@EntityListeners(IdAssigner.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class UserAuthProvider {
+public class UserAuthProvider implements GeneratedId {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
     private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -1,9 +1,42 @@
 package io.github.peterberghuis.auth.entity;
 
+import io.github.peterberghuis.security.RoleBits;
+
+import java.util.Collection;
+import java.util.EnumSet;
+
+/**
+ * Stored as a bitmask in {@code users.roles} and the {@code roles} token claim. A role's bit comes from its position in
+ * {@link RoleBits#NAMES}, so a new role is appended there first.
+ */
 public enum UserRole {
     USER,
     PAID_USER,
     ADMIN,
     MODERATOR,
-    SUPPORT
+    SUPPORT;
+
+    private final int bit = RoleBits.bit(name());
+
+    public int bit() {
+        return bit;
+    }
+
+    public static EnumSet<UserRole> fromBits(int bits) {
+        EnumSet<UserRole> roles = EnumSet.noneOf(UserRole.class);
+        for (UserRole role : values()) {
+            if ((bits & role.bit) != 0) {
+                roles.add(role);
+            }
+        }
+        return roles;
+    }
+
+    public static int toBits(Collection<UserRole> roles) {
+        int bits = 0;
+        for (UserRole role : roles) {
+            bits |= role.bit;
+        }
+        return bits;
+    }
 }
@@ -0,0 +1,24 @@
+package io.github.peterberghuis.auth.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Set;
+
+/**
+ * Maps {@link User#getRoles()} to the {@code users.roles} bitmask. Hibernate dirty-checks the converted value, so
+ * changing the set in place is written like any other column.
+ */
+@Converter
+public class UserRolesConverter implements AttributeConverter<Set<UserRole>, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(Set<UserRole> roles) {
+        return roles == null ? 0 : UserRole.toBits(roles);
+    }
+
+    @Override
+    public Set<UserRole> convertToEntityAttribute(Integer bits) {
+        return UserRole.fromBits(bits == null ? 0 : bits);
+    }
+}
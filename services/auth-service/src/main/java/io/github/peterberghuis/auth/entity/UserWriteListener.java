@@ -0,0 +1,28 @@
+package io.github.peterberghuis.auth.entity;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Entity listener publishing a {@link UserWrittenEvent} whenever Hibernate writes a {@link User} row, so copies of the
+ * user kept elsewhere can be dropped without the entity knowing who holds them. Native updates bypass it.
+ */
+@Component
+public class UserWriteListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UserWriteListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void onWrite(User user) {
+        eventPublisher.publishEvent(new UserWrittenEvent(user.getEmail()));
+    }
+}
@@ -0,0 +1,7 @@
+package io.github.peterberghuis.auth.entity;
+
+/**
+ * Published by {@link UserWriteListener} after Hibernate inserted, updated or deleted the user with this email.
+ */
+public record UserWrittenEvent(String email) {
+}
@@ -3,8 +3,10 @@ package io.github.peterberghuis.auth.exception;
 import io.github.peterberghuis.common.dto.ErrorResponse;
 import io.github.peterberghuis.common.exception.GlobalExceptionHandler;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.WebRequest;
@@ -23,4 +25,29 @@ public class AuthExceptionHandler extends GlobalExceptionHandler {
         log.warn("Authentication failed: {}", ex.getMessage());
         return createErrorResponse(HttpStatus.UNAUTHORIZED, ex.getMessage(), request);
     }
+
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<ErrorResponse> handlePasswordHashingBusyException(PasswordHashingBusyException ex, WebRequest request) {
+        log.warn("Password hashing queue full, rejecting request");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(createErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage(), request).getBody());
+    }
+
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<ErrorResponse> handleLoginThrottledException(LoginThrottledException ex, WebRequest request) {
+        // No log line: under credential stuffing these arrive by the thousand, auth.login.throttled counts them
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(createErrorResponse(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage(), request).getBody());
+    }
+
+    @ExceptionHandler(MethodArgumentNotValidException.class)
+    public ResponseEntity<ErrorResponse> handleMethodArgumentNotValidException(MethodArgumentNotValidException ex, WebRequest request) {
+        String message = ex.getBindingResult().getFieldErrors().stream()
+                .map(error -> error.getField() + " " + error.getDefaultMessage())
+                .findFirst()
+                .orElse("Invalid request");
+        return createErrorResponse(HttpStatus.BAD_REQUEST, message, request);
+    }
 }
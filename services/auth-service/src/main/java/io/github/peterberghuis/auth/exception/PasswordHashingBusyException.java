@@ -0,0 +1,19 @@
+package io.github.peterberghuis.auth.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+
+@Getter
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public PasswordHashingBusyException(Duration retryAfter) {
+        super("Too many sign-in attempts in progress, please retry shortly");
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.peterberghuis.auth.repository;
+
+import io.github.peterberghuis.auth.entity.JobLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    /**
+     * Takes the lease when it is free or expired, or extends it when {@code owner} already holds it.
+     *
+     * @return 1 when {@code owner} holds the lease until {@code expiresAt}, 0 when another owner does
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO auth_schema.job_leases (name, owner, expires_at)
+            VALUES (:name, :owner, :expiresAt)
+            ON CONFLICT (name)
+            DO UPDATE SET
+                owner = EXCLUDED.owner,
+                expires_at = EXCLUDED.expires_at
+            WHERE job_leases.owner = EXCLUDED.owner OR job_leases.expires_at <= :now
+            """, nativeQuery = true)
+    int tryAcquire(@Param("name") String name, @Param("owner") String owner, @Param("expiresAt") Instant expiresAt,
+                   @Param("now") Instant now);
+}
@@ -2,11 +2,55 @@ package io.github.peterberghuis.auth.repository;
 
 import io.github.peterberghuis.auth.entity.OAuth2Code;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 
 @Repository
 public interface OAuth2CodeRepository extends JpaRepository<OAuth2Code, String> {
-    Optional<OAuth2Code> findByCode(String code);
+
+    /**
+     * Plain insert; {@code save} would select first because the id is assigned.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO auth_schema.oauth2_codes (code, email, expiry_date)
+            VALUES (:code, :email, :expiryDate)
+            """, nativeQuery = true)
+    void insert(@Param("code") String code, @Param("email") String email, @Param("expiryDate") Instant expiryDate);
+
+    /**
+     * Deletes an unexpired code and returns its email, in a single statement. Empty when the code is unknown, expired
+     * or was consumed by a concurrent call. Expired rows are left to {@link #deleteExpired}.
+     */
+    @Query(value = """
+            WITH consumed AS (
+                DELETE FROM auth_schema.oauth2_codes
+                WHERE code = :code AND expiry_date > :now
+                RETURNING email
+            )
+            SELECT email FROM consumed
+            """, nativeQuery = true)
+    Optional<String> consume(@Param("code") String code, @Param("now") Instant now);
+
+    /**
+     * Deletes up to {@code limit} expired codes in its own short transaction. Returns the number deleted; call again
+     * while it equals {@code limit}.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM auth_schema.oauth2_codes
+            WHERE code IN (
+                SELECT code FROM auth_schema.oauth2_codes
+                WHERE expiry_date <= :now
+                LIMIT :limit
+            )
+            """, nativeQuery = true)
+    int deleteExpired(@Param("now") Instant now, @Param("limit") int limit);
 }
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.Optional;
@@ -19,15 +20,65 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID
     @Modifying
     void deleteByUser(User user);
 
+    @Modifying
+    @Query("DELETE FROM RefreshToken t WHERE t.user.id = :userId")
+    int deleteByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Stores the user's refresh token, replacing any previous one, and returns the user's current token epoch, in a
+     * single statement. Access tokens issued alongside carry that epoch: read here rather than from a cache, so a
+     * revocation made on another instance is never signed into a new token.
+     */
+    @Query(value = """
+            WITH upserted AS (
+                INSERT INTO auth_schema.refresh_tokens (id, token, user_id, expiry_date)
+                VALUES (:id, :token, :userId, :expiryDate)
+                ON CONFLICT (user_id)
+                DO UPDATE SET
+                    token = EXCLUDED.token,
+                    expiry_date = EXCLUDED.expiry_date,
+                    id = EXCLUDED.id
+                RETURNING user_id
+            )
+            SELECT u.token_epoch
+            FROM upserted
+            JOIN auth_schema.users u ON u.id = upserted.user_id
+            """, nativeQuery = true)
+    Optional<Long> upsertRefreshToken(@Param("id") UUID id, @Param("token") String token, @Param("userId") UUID userId, @Param("expiryDate") Instant expiryDate);
+
+    /**
+     * Swaps an unexpired refresh token for a new one and returns its owner with their roles, in a single statement.
+     * Returns empty when the old token is unknown, already rotated or expired; nothing is changed in that case.
+     */
+    @Query(value = """
+            WITH rotated AS (
+                UPDATE auth_schema.refresh_tokens
+                SET id = :newId, token = :newToken, expiry_date = :newExpiryDate
+                WHERE token = :oldToken AND expiry_date > :now
+                RETURNING user_id
+            )
+            SELECT u.id AS "userId", u.email AS "email", u.status AS "status", u.created_at AS "createdAt",
+                   u.roles AS "roles", u.token_epoch AS "tokenEpoch"
+            FROM rotated
+            JOIN auth_schema.users u ON u.id = rotated.user_id
+            """, nativeQuery = true)
+    Optional<UserWithRoles> rotate(@Param("oldToken") String oldToken, @Param("newId") UUID newId,
+                                          @Param("newToken") String newToken,
+                                          @Param("newExpiryDate") Instant newExpiryDate, @Param("now") Instant now);
+
+    /**
+     * Deletes up to {@code limit} expired tokens in its own short transaction. Returns the number deleted; call again
+     * while it equals {@code limit}.
+     */
+    @Transactional
     @Modifying
     @Query(value = """
-            INSERT INTO auth_schema.refresh_tokens (id, token, user_id, expiry_date)
-            VALUES (:id, :token, :userId, :expiryDate)
-            ON CONFLICT (user_id)
-            DO UPDATE SET
-                token = EXCLUDED.token,
-                expiry_date = EXCLUDED.expiry_date,
-                id = EXCLUDED.id
+            DELETE FROM auth_schema.refresh_tokens
+            WHERE id IN (
+                SELECT id FROM auth_schema.refresh_tokens
+                WHERE expiry_date <= :now
+                LIMIT :limit
+            )
             """, nativeQuery = true)
-    void upsertRefreshToken(@Param("id") UUID id, @Param("token") String token, @Param("userId") UUID userId, @Param("expiryDate") Instant expiryDate);
+    int deleteExpired(@Param("now") Instant now, @Param("limit") int limit);
 }
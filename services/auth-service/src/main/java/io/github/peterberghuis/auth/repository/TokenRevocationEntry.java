@@ -0,0 +1,13 @@
+package io.github.peterberghuis.auth.repository;
+
+import java.util.UUID;
+
+/**
+ * Row of {@code token_revocations}, read by {@link UserRepository#findRevocationsSince}.
+ */
+public interface TokenRevocationEntry {
+
+    UUID getUserId();
+
+    long getEpoch();
+}
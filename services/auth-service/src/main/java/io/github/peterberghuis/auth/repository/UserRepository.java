@@ -2,12 +2,135 @@ package io.github.peterberghuis.auth.repository;
 
 import io.github.peterberghuis.auth.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByEmail(String email);
+
+    /**
+     * Bypasses entity callbacks; callers evict the user from {@code UserSnapshotCache}.
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.passwordHash = :passwordHash WHERE u.id = :id")
+    int updatePasswordHash(@Param("id") UUID id, @Param("passwordHash") String passwordHash);
+
+    /**
+     * Inserts an active user with the given roles and a {@code local} auth provider, in a single statement. Returns 0
+     * without writing anything when the email is taken, including by a concurrent registration.
+     */
+    @Query(value = """
+            WITH inserted AS (
+                INSERT INTO auth_schema.users (id, email, password_hash, status, created_at, roles)
+                VALUES (:id, :email, :passwordHash, 'ACTIVE', :createdAt, :roles)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
+            ), provider AS (
+                INSERT INTO auth_schema.user_auth_providers (id, user_id, provider, provider_user_id)
+                SELECT :providerId, id, 'local', :email FROM inserted
+            ), legacy_roles AS (
+                -- Read by instances of the previous release until user_roles is dropped. Bit order of RoleBits.NAMES
+                INSERT INTO auth_schema.user_roles (user_id, role)
+                SELECT inserted.id, role.name
+                FROM inserted, unnest(ARRAY['USER', 'PAID_USER', 'ADMIN', 'MODERATOR', 'SUPPORT'])
+                    WITH ORDINALITY AS role(name, position)
+                WHERE :roles & (1 << (role.position::int - 1)) <> 0
+            )
+            SELECT count(*) FROM inserted
+            """, nativeQuery = true)
+    int insertLocalUser(@Param("id") UUID id, @Param("email") String email,
+                        @Param("passwordHash") String passwordHash, @Param("createdAt") LocalDateTime createdAt,
+                        @Param("roles") int roles, @Param("providerId") UUID providerId);
+
+    /**
+     * Finds or creates the user for an OAuth2 login and links the provider account, in a single statement. A new user
+     * is active with the given roles and no password. The link is skipped when either {@code uq_provider_user_id} or
+     * {@code uq_user_provider} already holds a row, so a provider account linked elsewhere or a second account of the
+     * same provider never fails the login.
+     * <p>
+     * Returns empty when a concurrent transaction inserted the email after this statement took its snapshot; running it
+     * again sees that user.
+     */
+    @Query(value = """
+            WITH inserted AS (
+                INSERT INTO auth_schema.users (id, email, password_hash, status, created_at, roles)
+                VALUES (:id, :email, NULL, 'ACTIVE', :createdAt, :roles)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id, email, status, created_at, roles, token_epoch
+            ), account AS (
+                SELECT id, email, status, created_at, roles, token_epoch FROM inserted
+                UNION ALL
+                SELECT id, email, status, created_at, roles, token_epoch FROM auth_schema.users WHERE email = :email
+            ), provider AS (
+                INSERT INTO auth_schema.user_auth_providers (id, user_id, provider, provider_user_id)
+                SELECT :providerId, id, :provider, :providerUserId FROM account
+                ON CONFLICT DO NOTHING
+            ), legacy_roles AS (
+                -- Read by instances of the previous release until user_roles is dropped. Bit order of RoleBits.NAMES
+                INSERT INTO auth_schema.user_roles (user_id, role)
+                SELECT inserted.id, role.name
+                FROM inserted, unnest(ARRAY['USER', 'PAID_USER', 'ADMIN', 'MODERATOR', 'SUPPORT'])
+                    WITH ORDINALITY AS role(name, position)
+                WHERE :roles & (1 << (role.position::int - 1)) <> 0
+            )
+            SELECT id AS "userId", email AS "email", status AS "status", created_at AS "createdAt", roles AS "roles",
+                   token_epoch AS "tokenEpoch"
+            FROM account
+            """, nativeQuery = true)
+    Optional<UserWithRoles> provisionOAuth2User(@Param("id") UUID id, @Param("email") String email,
+                                                @Param("createdAt") LocalDateTime createdAt, @Param("roles") int roles,
+                                                @Param("providerId") UUID providerId,
+                                                @Param("provider") String provider,
+                                                @Param("providerUserId") String providerUserId);
+
+    /**
+     * Bumps the user's token epoch and records the change in {@code token_revocations}, in a single statement.
+     * Returns the new epoch, empty for an unknown user. Bypasses entity callbacks like {@link #updatePasswordHash}.
+     */
+    @Query(value = """
+            WITH bumped AS (
+                UPDATE auth_schema.users
+                SET token_epoch = token_epoch + 1
+                WHERE id = :id
+                RETURNING id, token_epoch
+            ), recorded AS (
+                INSERT INTO auth_schema.token_revocations (user_id, epoch, revoked_at)
+                SELECT id, token_epoch, :now FROM bumped
+            )
+            SELECT token_epoch FROM bumped
+            """, nativeQuery = true)
+    Optional<Long> revokeTokens(@Param("id") UUID id, @Param("now") Instant now);
+
+    @Query(value = """
+            SELECT user_id AS "userId", epoch AS "epoch"
+            FROM auth_schema.token_revocations
+            WHERE revoked_at >= :since
+            """, nativeQuery = true)
+    List<TokenRevocationEntry> findRevocationsSince(@Param("since") Instant since);
+
+    /**
+     * Deletes up to {@code limit} revocations older than {@code before} in its own short transaction. Returns the
+     * number deleted; call again while it equals {@code limit}.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM auth_schema.token_revocations
+            WHERE (user_id, epoch) IN (
+                SELECT user_id, epoch FROM auth_schema.token_revocations
+                WHERE revoked_at < :before
+                LIMIT :limit
+            )
+            """, nativeQuery = true)
+    int deleteRevocationsBefore(@Param("before") Instant before, @Param("limit") int limit);
 }
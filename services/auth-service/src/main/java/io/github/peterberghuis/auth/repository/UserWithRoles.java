@@ -0,0 +1,26 @@
+package io.github.peterberghuis.auth.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A user row with its roles, as returned by single-statement writes such as
+ * {@link RefreshTokenRepository#rotate} and {@link UserRepository#provisionOAuth2User}.
+ */
+public interface UserWithRoles {
+
+    UUID getUserId();
+
+    String getEmail();
+
+    String getStatus();
+
+    LocalDateTime getCreatedAt();
+
+    /**
+     * Role bitmask, see {@link io.github.peterberghuis.auth.entity.UserRole#fromBits}.
+     */
+    int getRoles();
+
+    long getTokenEpoch();
+}
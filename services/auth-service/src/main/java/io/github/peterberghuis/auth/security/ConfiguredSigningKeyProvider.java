@@ -0,0 +1,91 @@
+package io.github.peterberghuis.auth.security;
+
+import io.github.peterberghuis.auth.config.JwtSigningProperties;
+import io.github.peterberghuis.security.SigningKey;
+import io.github.peterberghuis.security.SigningKeyProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Signing keys loaded from {@code jwt.signing.*}. Rotation is a config change: publish the next key next to the
+ * active one, switch {@code active-kid} once every verifier has fetched the JWKS, and drop the old key after the
+ * longest token lifetime has passed.
+ */
+@Component
+@ConditionalOnExpression("!'${jwt.signing.active-kid:}'.isEmpty()")
+public class ConfiguredSigningKeyProvider implements SigningKeyProvider {
+
+    // Ed25519 signs as EdDSA, P-256 as ES256
+    private static final List<String> KEY_ALGORITHMS = List.of("Ed25519", "EC");
+
+    private final SigningKey activeKey;
+    private final List<SigningKey> publishedKeys;
+
+    public ConfiguredSigningKeyProvider(JwtSigningProperties properties) {
+        this.publishedKeys = properties.getKeys().stream()
+                .map(ConfiguredSigningKeyProvider::toSigningKey)
+                .toList();
+        this.activeKey = publishedKeys.stream()
+                .filter(key -> key.kid().equals(properties.getActiveKid()))
+                .findFirst()
+                .filter(SigningKey::canSign)
+                .orElseThrow(() -> new IllegalStateException(
+                        "jwt.signing.active-kid '" + properties.getActiveKid() + "' has no configured private key"));
+    }
+
+    @Override
+    public SigningKey activeKey() {
+        return activeKey;
+    }
+
+    @Override
+    public List<SigningKey> publishedKeys() {
+        return publishedKeys;
+    }
+
+    private static SigningKey toSigningKey(JwtSigningProperties.Key key) {
+        if (!StringUtils.hasText(key.getKid()) || !StringUtils.hasText(key.getPublicKey())) {
+            throw new IllegalStateException("Every jwt.signing.keys entry needs a kid and a public-key");
+        }
+        PublicKey publicKey = parsePublicKey(key.getKid(), decodePem(key.getPublicKey()));
+        PrivateKey privateKey = StringUtils.hasText(key.getPrivateKey())
+                ? parsePrivateKey(key.getKid(), publicKey.getAlgorithm(), decodePem(key.getPrivateKey()))
+                : null;
+        return new SigningKey(key.getKid(), privateKey, publicKey);
+    }
+
+    private static PublicKey parsePublicKey(String kid, byte[] encoded) {
+        for (String algorithm : KEY_ALGORITHMS) {
+            try {
+                return KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(encoded));
+            } catch (GeneralSecurityException e) {
+                // try the next supported algorithm
+            }
+        }
+        throw new IllegalStateException("Public key '" + kid + "' is not an Ed25519 or EC P-256 key");
+    }
+
+    private static PrivateKey parsePrivateKey(String kid, String algorithm, byte[] encoded) {
+        try {
+            return KeyFactory.getInstance(algorithm).generatePrivate(new PKCS8EncodedKeySpec(encoded));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Private key '" + kid + "' does not match its " + algorithm + " public key", e);
+        }
+    }
+
+    private static byte[] decodePem(String pem) {
+        String base64 = pem.replaceAll("-----(BEGIN|END) [A-Z ]+-----", "")
+                .replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+}
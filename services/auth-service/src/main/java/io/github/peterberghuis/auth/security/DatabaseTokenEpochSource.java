@@ -0,0 +1,30 @@
+package io.github.peterberghuis.auth.security;
+
+import io.github.peterberghuis.auth.repository.UserRepository;
+import io.github.peterberghuis.security.TokenEpochSource;
+import io.github.peterberghuis.security.TokenRevocation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Feeds the {@code token_revocations} change table to this service's {@code TokenEpochRegistry}, and to other
+ * services through the revocations endpoint.
+ */
+@Component
+@RequiredArgsConstructor
+public class DatabaseTokenEpochSource implements TokenEpochSource {
+
+    private final UserRepository userRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TokenRevocation> revokedSince(Instant since) {
+        return userRepository.findRevocationsSince(since).stream()
+                .map(entry -> new TokenRevocation(entry.getUserId(), entry.getEpoch()))
+                .toList();
+    }
+}
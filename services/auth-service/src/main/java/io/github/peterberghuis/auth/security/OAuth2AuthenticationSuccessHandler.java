@@ -1,5 +1,6 @@
 package io.github.peterberghuis.auth.security;
 
+import io.github.peterberghuis.auth.service.AuthMetrics;
 import io.github.peterberghuis.auth.service.AuthService;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -21,6 +22,7 @@ import java.util.Map;
 public class OAuth2AuthenticationSuccessHandler implements AuthenticationSuccessHandler {
 
     private final AuthService authService;
+    private final AuthMetrics authMetrics;
     private final List<OAuth2UserInfoExtractor> extractors;
 
     @Value("${app.frontend-url:http://localhost:4200}")
@@ -46,7 +48,7 @@ public class OAuth2AuthenticationSuccessHandler implements AuthenticationSuccess
         String sub = extractor.getSub(attributes);
 
         // Provision the user in our database
-        authService.loginOrRegisterOAuth2User(email, name, sub, providerId);
+        authMetrics.record("oauth2_login", () -> authService.loginOrRegisterOAuth2User(email, name, sub, providerId));
 
         // Generate a temporary one-time code for the frontend to exchange for tokens
         String code = authService.generateOAuth2Code(email);
@@ -0,0 +1,68 @@
+package io.github.peterberghuis.auth.service;
+
+import io.github.peterberghuis.auth.exception.EmailAlreadyInUseException;
+import io.github.peterberghuis.auth.exception.LoginThrottledException;
+import io.github.peterberghuis.auth.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times {@link AuthService} operations as {@code auth.operation}, tagged with the operation and its outcome. Callers
+ * wrap the service call, so the time includes the transaction commit.
+ */
+@Component
+public class AuthMetrics {
+
+    private final Meter.MeterProvider<Timer> timers;
+
+    public AuthMetrics(MeterRegistry meterRegistry) {
+        this.timers = Timer.builder("auth.operation")
+                .description("Auth operations by outcome, including the transaction commit")
+                .withRegistry(meterRegistry);
+    }
+
+    public <T> T record(String operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } catch (RuntimeException e) {
+            outcome = outcome(e);
+            throw e;
+        } finally {
+            timers.withTags("operation", operation, "outcome", outcome)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void record(String operation, Runnable call) {
+        record(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private static String outcome(RuntimeException e) {
+        if (e instanceof AuthenticationException) {
+            return "rejected";
+        }
+        if (e instanceof EmailAlreadyInUseException) {
+            return "conflict";
+        }
+        if (e instanceof PasswordHashingBusyException) {
+            return "busy";
+        }
+        if (e instanceof LoginThrottledException) {
+            return "throttled";
+        }
+        return "error";
+    }
+}
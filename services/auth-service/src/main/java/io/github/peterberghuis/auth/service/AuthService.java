@@ -5,160 +5,212 @@ import io.github.peterberghuis.auth.entity.*;
 import io.github.peterberghuis.auth.entity.UserRole;
 import io.github.peterberghuis.auth.entity.UserStatus;
 import io.github.peterberghuis.auth.exception.EmailAlreadyInUseException;
-import io.github.peterberghuis.auth.repository.OAuth2CodeRepository;
 import io.github.peterberghuis.auth.repository.RefreshTokenRepository;
-import io.github.peterberghuis.auth.repository.UserAuthProviderRepository;
 import io.github.peterberghuis.auth.repository.UserRepository;
+import io.github.peterberghuis.auth.repository.UserWithRoles;
+import io.github.peterberghuis.common.id.IdGenerator;
 import io.github.peterberghuis.security.JwtUtils;
+import io.github.peterberghuis.security.TokenDigest;
+import io.github.peterberghuis.security.TokenEpochRegistry;
+import io.github.peterberghuis.security.TokenUser;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
-import java.util.Base64;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class AuthService {
 
     private final UserRepository userRepository;
+    private final UserSnapshotCache userSnapshotCache;
     private final RefreshTokenRepository refreshTokenRepository;
-    private final UserAuthProviderRepository userAuthProviderRepository;
-    private final OAuth2CodeRepository oauth2CodeRepository;
+    private final OAuth2CodeStore oauth2CodeStore;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtils jwtUtils;
+    private final TokenEpochRegistry tokenEpochRegistry;
+    private final IdGenerator idGenerator;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${jwt.refresh-expiration}")
     private Long refreshExpiration;
 
-    @Transactional
+    @Value("${auth.me.from-token:true}")
+    private boolean meFromToken;
+
+    /**
+     * Not transactional: the lookup and the password hash run without holding a pooled connection, which may wait in
+     * the hashing queue. Only the writes get a transaction.
+     */
     public AuthResponse login(LoginRequest request) {
-        User user = userRepository.findByEmail(request.getEmail())
+        UserSnapshot user = userSnapshotCache.findByEmail(request.getEmail())
                 .orElseThrow(() -> new BadCredentialsException("Invalid email or password"));
 
-        if (user.getPasswordHash() == null || !passwordEncoder.matches(request.getPassword(), user.getPasswordHash())) {
+        if (user.passwordHash() == null || !passwordEncoder.matches(request.getPassword(), user.passwordHash())) {
             throw new BadCredentialsException("Invalid email or password");
         }
 
-        if (user.getStatus() != UserStatus.ACTIVE) {
-            throw new BadCredentialsException("User account is " + user.getStatus());
+        if (user.status() != UserStatus.ACTIVE) {
+            throw new BadCredentialsException("User account is " + user.status());
         }
 
-        return createAuthResponse(user);
+        // Only now do we hold the plain password: rehash legacy or under-strength hashes with the current settings
+        String upgradedHash = passwordEncoder.upgradeEncoding(user.passwordHash())
+                ? passwordEncoder.encode(request.getPassword())
+                : null;
+
+        return transactionTemplate.execute(status -> {
+            if (upgradedHash != null) {
+                userRepository.updatePasswordHash(user.id(), upgradedHash);
+                userSnapshotCache.invalidate(user.email());
+            }
+            return createAuthResponse(user);
+        });
     }
 
-    @Transactional
+    /**
+     * A concurrent first login may insert the email after the first attempt took its snapshot, so a second attempt
+     * runs in a new transaction that sees it. Under SERIALIZABLE (CockroachDB) a second statement in the same
+     * transaction would not, and the race may surface as a serialization failure instead of an empty result.
+     */
     public AuthResponse loginOrRegisterOAuth2User(String email, String name, String sub, String provider) {
-        User user = userRepository.findByEmail(email).orElseGet(() -> {
-            User newUser = new User();
-            newUser.setEmail(email);
-            newUser.setPasswordHash(null);
-            newUser.setStatus(UserStatus.ACTIVE);
-            newUser.setRoles(Set.of(UserRole.USER));
-            return userRepository.save(newUser);
-        });
+        UserWithRoles account = provisionOAuth2User(email, sub, provider)
+                .or(() -> provisionOAuth2User(email, sub, provider))
+                .orElseThrow(() -> new IllegalStateException("Could not provision OAuth2 user " + email));
 
-        userAuthProviderRepository.findByProviderAndProviderUserId(provider, sub)
-                .orElseGet(() -> {
-                    UserAuthProvider authProvider = new UserAuthProvider();
-                    authProvider.setUser(user);
-                    authProvider.setProvider(provider);
-                    authProvider.setProviderUserId(sub);
-                    return userAuthProviderRepository.save(authProvider);
-                });
-
-        if (user.getStatus() != UserStatus.ACTIVE) {
-            throw new BadCredentialsException("User account is " + user.getStatus());
+        UserSnapshot user = toSnapshot(account);
+        if (user.status() != UserStatus.ACTIVE) {
+            throw new BadCredentialsException("User account is " + user.status());
         }
 
-        return createAuthResponse(user);
+        return transactionTemplate.execute(status -> createAuthResponse(user));
+    }
+
+    private Optional<UserWithRoles> provisionOAuth2User(String email, String sub, String provider) {
+        try {
+            return transactionTemplate.execute(status -> userRepository.provisionOAuth2User(idGenerator.next(), email,
+                    LocalDateTime.now(), UserRole.USER.bit(), idGenerator.next(), provider, sub));
+        } catch (ConcurrencyFailureException e) {
+            log.debug("OAuth2 provisioning of {} lost a race: {}", email, e.getMessage());
+            return Optional.empty();
+        }
     }
 
-    @Transactional
     public String generateOAuth2Code(String email) {
         String code = UUID.randomUUID().toString();
-        OAuth2Code oauth2Code = new OAuth2Code();
-        oauth2Code.setCode(code);
-        oauth2Code.setEmail(email);
-        oauth2Code.setExpiryDate(Instant.now().plusSeconds(300)); // 5 minutes
-        oauth2CodeRepository.save(oauth2Code);
+        oauth2CodeStore.save(code, email);
         return code;
     }
 
     @Transactional
     public AuthResponse exchangeCode(String code) {
-        OAuth2Code oauth2Code = oauth2CodeRepository.findByCode(code)
+        String email = oauth2CodeStore.consume(code)
                 .orElseThrow(() -> new BadCredentialsException("Invalid or expired code"));
 
-        if (oauth2Code.getExpiryDate().isBefore(Instant.now())) {
-            oauth2CodeRepository.delete(oauth2Code);
-            throw new BadCredentialsException("Invalid or expired code");
-        }
-
-        String email = oauth2Code.getEmail();
-        oauth2CodeRepository.delete(oauth2Code);
-
-        User user = userRepository.findByEmail(email)
+        UserSnapshot user = userSnapshotCache.findByEmail(email)
                 .orElseThrow(() -> new BadCredentialsException("User not found"));
 
-        if (user.getStatus() != UserStatus.ACTIVE) {
-            throw new BadCredentialsException("User account is " + user.getStatus());
+        if (user.status() != UserStatus.ACTIVE) {
+            throw new BadCredentialsException("User account is " + user.status());
         }
 
         return createAuthResponse(user);
     }
 
-    @Transactional
+    /**
+     * The user, role and local provider are written by one conflict-checked insert, so a taken email, even one
+     * registered concurrently, ends in {@link EmailAlreadyInUseException} rather than a constraint violation. As in
+     * {@link #login}, the password is hashed before the transaction starts.
+     */
     public AuthResponse register(RegisterRequest request) {
-        if (userRepository.findByEmail(request.getEmail()).isPresent()) {
-            throw new EmailAlreadyInUseException("Email already in use");
-        }
-
-        User user = new User();
-        user.setEmail(request.getEmail());
-        user.setPasswordHash(passwordEncoder.encode(request.getPassword()));
-        user.setStatus(UserStatus.ACTIVE);
-        user.setRoles(Set.of(UserRole.USER));
-
-        userRepository.save(user);
-
-        UserAuthProvider localProvider = new UserAuthProvider();
-        localProvider.setUser(user);
-        localProvider.setProvider("local");
-        localProvider.setProviderUserId(user.getEmail());
-        userAuthProviderRepository.save(localProvider);
-
-        return createAuthResponse(user);
+        UserSnapshot user = new UserSnapshot(idGenerator.next(), request.getEmail(),
+                passwordEncoder.encode(request.getPassword()), UserStatus.ACTIVE, LocalDateTime.now(),
+                Set.of(UserRole.USER));
+
+        return transactionTemplate.execute(status -> {
+            if (userRepository.insertLocalUser(user.id(), user.email(), user.passwordHash(), user.createdAt(),
+                    UserRole.toBits(user.roles()), idGenerator.next()) == 0) {
+                throw new EmailAlreadyInUseException("Email already in use");
+            }
+            return createAuthResponse(user);
+        });
     }
 
+    /**
+     * Rotates the refresh token in one conditional statement, which also returns the user and roles to issue the new
+     * access token for. The subject of the presented token is only trusted to name the new refresh token; the database
+     * row decides whether it is still valid.
+     */
     @Transactional
     public AuthResponse refresh(RefreshRequest request) {
         String requestRefreshToken = request.getRefreshToken();
-        String hashedToken = hashToken(requestRefreshToken);
+        String email;
+        try {
+            email = jwtUtils.verifyRefreshToken(requestRefreshToken);
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new BadCredentialsException("Refresh token is invalid or expired");
+        }
 
-        RefreshToken token = refreshTokenRepository.findByToken(hashedToken)
-                .map(this::verifyExpiration)
-                .orElseThrow(() -> new BadCredentialsException("Refresh token is not in database!"));
+        String rawRefreshToken = jwtUtils.generateRefreshToken(email);
+        Instant now = Instant.now();
+        UserWithRoles rotation = refreshTokenRepository.rotate(hashToken(requestRefreshToken), idGenerator.next(),
+                        hashToken(rawRefreshToken), now.plusMillis(refreshExpiration), now)
+                .orElseThrow(() -> new BadCredentialsException("Refresh token is invalid or expired"));
 
-        User user = token.getUser();
-        if (user.getStatus() != UserStatus.ACTIVE) {
-            throw new BadCredentialsException("User account is " + user.getStatus());
+        UserSnapshot user = toSnapshot(rotation);
+        if (user.status() != UserStatus.ACTIVE) {
+            // Rolls back the rotation, the presented token stays as it was
+            throw new BadCredentialsException("User account is " + user.status());
         }
 
-        return createAuthResponse(user);
+        AuthResponse response = new AuthResponse();
+        response.setAccessToken(generateAccessToken(user, rotation.getTokenEpoch()));
+        response.setRefreshToken(rawRefreshToken);
+        response.setUser(toUserResponse(user));
+        return response;
+    }
+
+    /**
+     * Answers from the access token's user claims when {@code auth.me.from-token} is on, so the call costs no lookup.
+     * The data is then as of token issuance. Tokens without the claims fall back to {@link #me(String)}.
+     */
+    public UserResponse me(TokenUser principal) {
+        if (meFromToken && principal.hasUserClaims()) {
+            try {
+                return toUserResponse(new UserSnapshot(principal.id(), principal.email(), null,
+                        UserStatus.valueOf(principal.status()),
+                        LocalDateTime.ofInstant(principal.createdAt(), ZoneOffset.UTC),
+                        principal.roles().stream().map(UserRole::valueOf).collect(Collectors.toSet())));
+            } catch (IllegalArgumentException e) {
+                // Status or role renamed since the token was issued
+            }
+        }
+        return me(principal.getName());
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Not transactional: a cache hit must not check out a connection. A miss loads through the repository.
+     */
     public UserResponse me(String email) {
-        User user = userRepository.findByEmail(email)
+        UserSnapshot user = userSnapshotCache.findByEmail(email)
                 .orElseThrow(() -> new BadCredentialsException("User not found"));
 
         return toUserResponse(user);
@@ -166,80 +218,75 @@ public class AuthService {
 
     @Transactional
     public void logout(String email) {
-        User user = userRepository.findByEmail(email)
+        UserSnapshot user = userSnapshotCache.findByEmail(email)
                 .orElseThrow(() -> new BadCredentialsException("User not found"));
-        refreshTokenRepository.deleteByUser(user);
-        refreshTokenRepository.flush();
+        refreshTokenRepository.deleteByUserId(user.id());
+        revokeAccessTokens(user.id());
+    }
+
+    /**
+     * Access tokens issued before this call stop being accepted. Applied locally once the transaction commits, so a
+     * rolled back revocation never rejects tokens carrying the epoch still in the database; other instances pick it up
+     * from {@code token_revocations} on their next poll.
+     */
+    private void revokeAccessTokens(UUID userId) {
+        userRepository.revokeTokens(userId, Instant.now())
+                .ifPresent(epoch -> revokeAfterCommit(userId, epoch));
     }
 
-    private AuthResponse createAuthResponse(User user) {
-        String accessToken = generateAccessToken(user);
-        String refreshToken = createRefreshToken(user).getToken();
+    private void revokeAfterCommit(UUID userId, long epoch) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            tokenEpochRegistry.revoke(userId, epoch);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                tokenEpochRegistry.revoke(userId, epoch);
+            }
+        });
+    }
+
+    private AuthResponse createAuthResponse(UserSnapshot user) {
+        String refreshToken = jwtUtils.generateRefreshToken(user.email());
+        long tokenEpoch = refreshTokenRepository.upsertRefreshToken(idGenerator.next(), hashToken(refreshToken),
+                        user.id(), Instant.now().plusMillis(refreshExpiration))
+                .orElseThrow(() -> new IllegalStateException("No user " + user.id() + " to issue tokens for"));
+
         AuthResponse response = new AuthResponse();
-        response.setAccessToken(accessToken);
+        response.setAccessToken(generateAccessToken(user, tokenEpoch));
         response.setRefreshToken(refreshToken);
         response.setUser(toUserResponse(user));
         return response;
     }
 
-    private UserResponse toUserResponse(User user) {
+    private UserResponse toUserResponse(UserSnapshot user) {
         UserResponse response = new UserResponse();
-        response.setId(user.getId());
-        response.setEmail(user.getEmail());
-        response.setStatus(io.github.peterberghuis.auth.dto.UserStatus.fromValue(user.getStatus().name()));
-        response.setCreatedAt(user.getCreatedAt().atOffset(java.time.ZoneOffset.UTC));
-        response.setRoles(user.getRoles().stream()
+        response.setId(user.id());
+        response.setEmail(user.email());
+        response.setStatus(io.github.peterberghuis.auth.dto.UserStatus.fromValue(user.status().name()));
+        response.setCreatedAt(user.createdAt().atOffset(ZoneOffset.UTC));
+        response.setRoles(user.roles().stream()
                 .map(role -> io.github.peterberghuis.auth.dto.UserRole.fromValue(role.name()))
                 .toList());
         return response;
     }
 
-    private String generateAccessToken(User user) {
-        var authorities = user.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority(role.name()))
+    private String generateAccessToken(UserSnapshot user, long tokenEpoch) {
+        List<String> roles = user.roles().stream()
+                .map(UserRole::name)
                 .toList();
 
-        return jwtUtils.generateToken(user.getEmail(), authorities);
+        return jwtUtils.generateToken(new TokenUser(user.email(), user.id(), user.status().name(),
+                user.createdAt().toInstant(ZoneOffset.UTC), roles), tokenEpoch);
     }
 
-    private RefreshToken createRefreshToken(User user) {
-        String rawRefreshToken = jwtUtils.generateRefreshToken(user.getEmail());
-        String hashedToken = hashToken(rawRefreshToken);
-
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.setId(UUID.randomUUID());
-        refreshToken.setUser(user);
-        refreshToken.setExpiryDate(Instant.now().plusMillis(refreshExpiration));
-        refreshToken.setToken(hashedToken);
-
-        refreshTokenRepository.upsertRefreshToken(
-                refreshToken.getId(),
-                refreshToken.getToken(),
-                user.getId(),
-                refreshToken.getExpiryDate()
-        );
-
-        // Return a temporary token object with the raw token to send back to the client
-        RefreshToken responseToken = new RefreshToken();
-        responseToken.setToken(rawRefreshToken);
-        return responseToken;
+    private static UserSnapshot toSnapshot(UserWithRoles row) {
+        return new UserSnapshot(row.getUserId(), row.getEmail(), null, UserStatus.valueOf(row.getStatus()),
+                row.getCreatedAt(), UserRole.fromBits(row.getRoles()));
     }
 
     private String hashToken(String token) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(token.getBytes());
-            return Base64.getEncoder().encodeToString(hash);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Error hashing refresh token", e);
-        }
-    }
-
-    private RefreshToken verifyExpiration(RefreshToken token) {
-        if (token.getExpiryDate().isBefore(Instant.now())) {
-            refreshTokenRepository.delete(token);
-            throw new BadCredentialsException("Refresh token was expired. Please make a new signin request");
-        }
-        return token;
+        return TokenDigest.sha256(token);
     }
 }
@@ -0,0 +1,91 @@
+package io.github.peterberghuis.auth.service;
+
+import io.github.peterberghuis.auth.config.PurgeProperties;
+import io.github.peterberghuis.auth.repository.JobLeaseRepository;
+import io.github.peterberghuis.auth.repository.OAuth2CodeRepository;
+import io.github.peterberghuis.auth.repository.RefreshTokenRepository;
+import io.github.peterberghuis.auth.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Deletes expired refresh tokens and OAuth2 codes, which are otherwise only removed when presented, and token
+ * revocations older than an access token's lifetime.
+ * <p>
+ * Rows go in chunks of {@code auth.purge.chunk-size}, each its own transaction, so the job never holds a long lock
+ * or a large transaction (CockroachDB in particular prefers many small deletes). Only the instance holding the
+ * {@code job_leases} row runs it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "auth.purge", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ExpiredTokenPurgeJob {
+
+    static final String LEASE_NAME = "expired-token-purge";
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final OAuth2CodeRepository oauth2CodeRepository;
+    private final UserRepository userRepository;
+    private final JobLeaseRepository jobLeaseRepository;
+    private final PurgeProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final String owner = UUID.randomUUID().toString();
+
+    @Value("${jwt.expiration}")
+    private long accessTokenLifetimeMillis;
+
+    @Scheduled(fixedDelayString = "${auth.purge.interval:5m}", initialDelayString = "${auth.purge.interval:5m}")
+    public void run() {
+        Instant now = Instant.now();
+        if (jobLeaseRepository.tryAcquire(LEASE_NAME, owner, now.plus(properties.getLeaseDuration()), now) == 0) {
+            log.debug("Skipping expired token purge, another instance holds the lease");
+            return;
+        }
+
+        purge("refresh_tokens", limit -> refreshTokenRepository.deleteExpired(now, limit));
+        purge("oauth2_codes", limit -> oauth2CodeRepository.deleteExpired(now, limit));
+        Instant revokedBefore = now.minusMillis(accessTokenLifetimeMillis);
+        purge("token_revocations", limit -> userRepository.deleteRevocationsBefore(revokedBefore, limit));
+    }
+
+    long purge(String table, IntUnaryOperator deleteChunk) {
+        int chunkSize = properties.getChunkSize();
+        long start = System.nanoTime();
+        long total = 0;
+        int chunks = 0;
+        int deleted;
+        do {
+            deleted = deleteChunk.applyAsInt(chunkSize);
+            total += deleted;
+            chunks++;
+        } while (deleted == chunkSize && chunks < properties.getMaxChunks());
+        long elapsed = System.nanoTime() - start;
+
+        Counter.builder("auth.purge.rows")
+                .description("Expired rows deleted by the purge job")
+                .tag("table", table)
+                .register(meterRegistry)
+                .increment(total);
+        Timer.builder("auth.purge.duration")
+                .description("Time one purge run spent on a table")
+                .tag("table", table)
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Purged {} expired rows from {} in {} chunks, {} ms", total, table, chunks,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return total;
+    }
+}
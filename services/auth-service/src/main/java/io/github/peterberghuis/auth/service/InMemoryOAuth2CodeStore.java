@@ -0,0 +1,55 @@
+package io.github.peterberghuis.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.github.peterberghuis.auth.config.OAuth2CodeProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Keeps codes in a local Caffeine cache. Consuming is a single {@code remove} on the backing concurrent map, so no
+ * database round trip or lock is involved. Each code gets its own deadline, ttl after it is saved, which Caffeine
+ * tracks in its timer wheel; the system scheduler evicts expired codes in the background rather than waiting for the
+ * next write. Codes do not survive a restart and are not visible to other instances.
+ */
+@Component
+@ConditionalOnProperty(prefix = "auth.oauth2-code", name = "store", havingValue = "memory")
+public class InMemoryOAuth2CodeStore implements OAuth2CodeStore {
+
+    private final Cache<String, String> codes;
+
+    @Autowired
+    public InMemoryOAuth2CodeStore(OAuth2CodeProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, Ticker.systemTicker());
+    }
+
+    InMemoryOAuth2CodeStore(OAuth2CodeProperties properties, MeterRegistry meterRegistry, Ticker ticker) {
+        this.codes = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(Expiry.<String, String>creating((code, email) -> properties.getTtl()))
+                .scheduler(Scheduler.systemScheduler())
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, codes, "oauth2_codes");
+    }
+
+    @Override
+    public void save(String code, String email) {
+        codes.put(code, email);
+    }
+
+    @Override
+    public Optional<String> consume(String code) {
+        // Returns null for an entry that has expired but is not evicted yet
+        return Optional.ofNullable(codes.asMap().remove(code));
+    }
+}
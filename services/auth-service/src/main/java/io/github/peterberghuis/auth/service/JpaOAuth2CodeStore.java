@@ -0,0 +1,36 @@
+package io.github.peterberghuis.auth.service;
+
+import io.github.peterberghuis.auth.config.OAuth2CodeProperties;
+import io.github.peterberghuis.auth.repository.OAuth2CodeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Keeps codes in {@code auth_schema.oauth2_codes}, shared by all instances. Saving and consuming are one statement
+ * each.
+ */
+@Component
+@ConditionalOnProperty(prefix = "auth.oauth2-code", name = "store", havingValue = "database", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaOAuth2CodeStore implements OAuth2CodeStore {
+
+    private final OAuth2CodeRepository oauth2CodeRepository;
+    private final OAuth2CodeProperties properties;
+
+    @Override
+    @Transactional
+    public void save(String code, String email) {
+        oauth2CodeRepository.insert(code, email, Instant.now().plus(properties.getTtl()));
+    }
+
+    @Override
+    @Transactional
+    public Optional<String> consume(String code) {
+        return oauth2CodeRepository.consume(code, Instant.now());
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.peterberghuis.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.github.peterberghuis.auth.config.LoginThrottleProperties;
+import io.github.peterberghuis.auth.exception.LoginThrottledException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets for login attempts, one per email and one per client address, checked before the user lookup and the
+ * password hash so a credential-stuffing run costs neither a query nor a BCrypt verify once it is over the limit.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the instant it will be full again (GCRA), advanced by CAS, so
+ * taking a token never locks. Buckets live in size-bounded Caffeine caches, whose backing map is striped, and are
+ * dropped once idle for as long as they take to refill, when forgetting them changes nothing.
+ */
+@Component
+public class LoginThrottle {
+
+    private final boolean enabled;
+    private final Buckets byEmail;
+    private final Buckets byAddress;
+
+    @Autowired
+    public LoginThrottle(LoginThrottleProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, Ticker.systemTicker());
+    }
+
+    LoginThrottle(LoginThrottleProperties properties, MeterRegistry meterRegistry, Ticker ticker) {
+        this.enabled = properties.isEnabled();
+        this.byEmail = new Buckets("email", properties.getEmail(), properties.getMaximumSize(), meterRegistry, ticker);
+        this.byAddress = new Buckets("ip", properties.getIp(), properties.getMaximumSize(), meterRegistry, ticker);
+    }
+
+    /**
+     * Takes a token from both buckets.
+     *
+     * @throws LoginThrottledException when either is empty
+     */
+    public void acquire(String email, String clientAddress) {
+        if (!enabled) {
+            return;
+        }
+        // Address first: a client over its limit should not also drain the bucket of the email it targets
+        byAddress.acquire(clientAddress);
+        // Request validation rejects a login without an email, this only keeps a missing one from failing here
+        if (email != null) {
+            byEmail.acquire(email.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static final class Buckets {
+
+        private final Cache<String, AtomicLong> buckets;
+        private final Ticker ticker;
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final Counter throttled;
+
+        Buckets(String key, LoginThrottleProperties.Bucket bucket, long maximumSize, MeterRegistry meterRegistry,
+                Ticker ticker) {
+            this.ticker = ticker;
+            this.intervalNanos = bucket.getRefillInterval().toNanos();
+            this.burstNanos = intervalNanos * bucket.getCapacity();
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterAccess(burstNanos, TimeUnit.NANOSECONDS)
+                    .ticker(ticker)
+                    .recordStats()
+                    .build();
+            this.throttled = Counter.builder("auth.login.throttled")
+                    .description("Login attempts rejected before the password check")
+                    .tag("key", key)
+                    .register(meterRegistry);
+            CaffeineCacheMetrics.monitor(meterRegistry, buckets, "login_throttle_" + key);
+        }
+
+        void acquire(String key) {
+            long now = ticker.read();
+            AtomicLong fullAt = buckets.get(key, k -> new AtomicLong(now));
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current, now) + intervalNanos;
+                long wait = next - now - burstNanos;
+                if (wait > 0) {
+                    throttled.increment();
+                    // Whole seconds, rounded up, since that is what Retry-After carries
+                    throw new LoginThrottledException(Duration.ofSeconds(Math.ceilDiv(wait, 1_000_000_000L)));
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package io.github.peterberghuis.auth.service;
+
+import java.util.Optional;
+
+/**
+ * One-time codes handed to the frontend after an OAuth2 login, exchanged once for tokens.
+ * Selected with {@code auth.oauth2-code.store}.
+ */
+public interface OAuth2CodeStore {
+
+    /**
+     * Stores a code for the email, valid for {@code auth.oauth2-code.ttl}.
+     */
+    void save(String code, String email);
+
+    /**
+     * Removes the code and returns its email. Empty when the code is unknown, expired or already consumed; of two
+     * concurrent calls for the same code, at most one gets the email.
+     */
+    Optional<String> consume(String code);
+}
@@ -0,0 +1,28 @@
+package io.github.peterberghuis.auth.service;
+
+import io.github.peterberghuis.auth.entity.User;
+import io.github.peterberghuis.auth.entity.UserRole;
+import io.github.peterberghuis.auth.entity.UserStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Immutable copy of the parts of a {@link User} the auth flows read, safe to share between requests. Leaves out the
+ * token epoch: a cached copy could miss a revocation made on another instance, so it is read when tokens are issued.
+ */
+public record UserSnapshot(UUID id, String email, String passwordHash, UserStatus status, LocalDateTime createdAt,
+                           Set<UserRole> roles) {
+
+    public UserSnapshot {
+        roles = roles.isEmpty() ? Set.of() : Collections.unmodifiableSet(EnumSet.copyOf(roles));
+    }
+
+    public static UserSnapshot from(User user) {
+        return new UserSnapshot(user.getId(), user.getEmail(), user.getPasswordHash(), user.getStatus(),
+                user.getCreatedAt(), user.getRoles());
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.peterberghuis.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.peterberghuis.auth.entity.UserWrittenEvent;
+import io.github.peterberghuis.auth.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Read-through cache of {@link UserSnapshot}s by email in front of {@link UserRepository#findByEmail}.
+ * <p>
+ * Writes through JPA invalidate the entry via {@link UserWrittenEvent}; bulk and native updates must call
+ * {@link #invalidate} themselves. Invalidation is local to this instance, so entries also expire after
+ * {@code auth.user-cache.ttl} to bound how long another instance's write can go unseen. Unknown emails are not cached.
+ */
+@Component
+public class UserSnapshotCache {
+
+    private final Cache<String, UserSnapshot> cache;
+    private final UserRepository userRepository;
+
+    public UserSnapshotCache(UserRepository userRepository,
+                             @Value("${auth.user-cache.maximum-size:10000}") long maximumSize,
+                             @Value("${auth.user-cache.ttl:60s}") Duration ttl,
+                             MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users");
+    }
+
+    public Optional<UserSnapshot> findByEmail(String email) {
+        return Optional.ofNullable(cache.get(email, key -> userRepository.findByEmail(key)
+                .map(UserSnapshot::from)
+                .orElse(null)));
+    }
+
+    /**
+     * Drops the entry now and, inside a transaction, once more after commit, so a concurrent read of the
+     * pre-commit row cannot stay cached.
+     */
+    public void invalidate(String email) {
+        cache.invalidate(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(email);
+                }
+            });
+        }
+    }
+
+    @EventListener
+    void onUserWritten(UserWrittenEvent event) {
+        invalidate(event.email());
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
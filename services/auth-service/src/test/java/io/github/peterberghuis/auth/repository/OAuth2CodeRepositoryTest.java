@@ -0,0 +1,121 @@
+package io.github.peterberghuis.auth.repository;
+
+import io.github.peterberghuis.auth.service.JpaOAuth2CodeStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OAuth2CodeRepositoryTest extends PostgresRepositoryTest {
+
+    @Autowired
+    private JpaOAuth2CodeStore store;
+
+    @Autowired
+    private OAuth2CodeRepository oauth2CodeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void consume_ShouldReturnEmailOnlyOnce() {
+        String code = UUID.randomUUID().toString();
+        store.save(code, "user@example.com");
+
+        assertEquals(Optional.of("user@example.com"), store.consume(code));
+        assertTrue(store.consume(code).isEmpty());
+        assertEquals(0, rowCount(code));
+    }
+
+    @Test
+    void consume_ShouldRejectExpiredCode() {
+        String code = insertCode(Instant.now().minusSeconds(60));
+
+        assertTrue(store.consume(code).isEmpty());
+        // Left for deleteExpired
+        assertEquals(1, rowCount(code));
+    }
+
+    @Test
+    void consume_ShouldHandOutCodeOnce_WhenConsumedConcurrently() throws Exception {
+        String code = UUID.randomUUID().toString();
+        store.save(code, "user@example.com");
+
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        Callable<Optional<String>> consume = () -> {
+            start.await();
+            return store.consume(code);
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Optional<String>>> results = IntStream.range(0, threads)
+                    .mapToObj(i -> executor.submit(consume))
+                    .toList();
+            start.countDown();
+
+            int handedOut = 0;
+            for (Future<Optional<String>> result : results) {
+                handedOut += result.get().isPresent() ? 1 : 0;
+            }
+            assertEquals(1, handedOut);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void save_ShouldExpireCodeAfterTtl() {
+        String code = UUID.randomUUID().toString();
+        Instant before = Instant.now();
+        store.save(code, "user@example.com");
+
+        Instant expiry = jdbcTemplate.queryForObject(
+                "SELECT expiry_date FROM auth_schema.oauth2_codes WHERE code = ?", Timestamp.class, code)
+                .toInstant();
+        // The column keeps microseconds
+        assertFalse(expiry.isBefore(before.plus(Duration.ofMinutes(5)).minusNanos(1_000)));
+        assertFalse(expiry.isAfter(Instant.now().plus(Duration.ofMinutes(5))));
+    }
+
+    @Test
+    void deleteExpired_ShouldDeleteOnlyExpiredCodes() {
+        String expired = insertCode(Instant.now().minusSeconds(60));
+        String valid = insertCode(Instant.now().plusSeconds(60));
+
+        while (oauth2CodeRepository.deleteExpired(Instant.now(), 1000) == 1000) {
+            // Other tests may have left expired codes behind
+        }
+
+        assertEquals(0, rowCount(expired));
+        assertEquals(1, rowCount(valid));
+    }
+
+    private String insertCode(Instant expiryDate) {
+        String code = UUID.randomUUID().toString();
+        jdbcTemplate.update("INSERT INTO auth_schema.oauth2_codes (code, email, expiry_date) VALUES (?, ?, ?)",
+                code, "user@example.com", Timestamp.from(expiryDate));
+        return code;
+    }
+
+    private int rowCount(String code) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM auth_schema.oauth2_codes WHERE code = ?",
+                Integer.class, code);
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.peterberghuis.auth.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Runs the service against an embedded PostgreSQL migrated by the Liquibase changelog, for statements a mock cannot
+ * check. One database and one application context serve every subclass, so tests use their own emails and codes.
+ */
+@SpringBootTest
+abstract class PostgresRepositoryTest {
+
+    private static final EmbeddedPostgres POSTGRES = start();
+
+    // Not needed by the repositories, and resolving the Google registration would need the network
+    @MockitoBean
+    ClientRegistrationRepository clientRegistrationRepository;
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        registry.add("spring.security.oauth2.client.registration.google.client-secret", () -> "test");
+        registry.add("password.encoder.calibrate", () -> "false");
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    postgres.close();
+                } catch (IOException e) {
+                    // The JVM is exiting either way
+                }
+            }));
+            return postgres;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start the embedded PostgreSQL", e);
+        }
+    }
+}
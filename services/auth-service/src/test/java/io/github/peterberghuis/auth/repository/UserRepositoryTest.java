@@ -0,0 +1,86 @@
+package io.github.peterberghuis.auth.repository;
+
+import io.github.peterberghuis.auth.entity.UserRole;
+import io.github.peterberghuis.security.TokenEpochRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserRepositoryTest extends PostgresRepositoryTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TokenEpochRegistry tokenEpochRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void statusChange_ShouldRevokeTokens_WhenUserLeavesActive() {
+        UUID userId = insertUser("suspended@example.com");
+
+        setStatus(userId, "SUSPENDED");
+
+        assertEquals(1, tokenEpoch(userId));
+        assertTrue(userRepository.findRevocationsSince(Instant.now().minusSeconds(60)).stream()
+                .anyMatch(entry -> entry.getUserId().equals(userId) && entry.getEpoch() == 1));
+    }
+
+    @Test
+    void statusChange_ShouldKeepTokens_WhenStatusStaysOrBecomesActive() {
+        UUID userId = insertUser("reactivated@example.com");
+
+        setStatus(userId, "ACTIVE");
+        jdbcTemplate.update("UPDATE auth_schema.users SET password_hash = 'other' WHERE id = ?", userId);
+        assertEquals(0, tokenEpoch(userId));
+
+        setStatus(userId, "SUSPENDED");
+        setStatus(userId, "SUSPENDED");
+        setStatus(userId, "ACTIVE");
+        assertEquals(1, tokenEpoch(userId));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM auth_schema.token_revocations WHERE user_id = ?", Integer.class, userId));
+    }
+
+    @Test
+    void statusChange_ShouldReachTheRegistryWithinAPoll() throws InterruptedException {
+        UUID userId = insertUser("polled@example.com");
+        assertFalse(tokenEpochRegistry.isRevoked(userId, 0));
+
+        setStatus(userId, "SUSPENDED");
+
+        // jwt.revocation.poll-interval is 2s
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!tokenEpochRegistry.isRevoked(userId, 0) && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        assertTrue(tokenEpochRegistry.isRevoked(userId, 0));
+        assertFalse(tokenEpochRegistry.isRevoked(userId, 1));
+    }
+
+    private UUID insertUser(String email) {
+        UUID userId = UUID.randomUUID();
+        assertEquals(1, userRepository.insertLocalUser(userId, email, "hash", LocalDateTime.now(),
+                UserRole.USER.bit(), UUID.randomUUID()));
+        return userId;
+    }
+
+    private void setStatus(UUID userId, String status) {
+        jdbcTemplate.update("UPDATE auth_schema.users SET status = ? WHERE id = ?", status, userId);
+    }
+
+    private long tokenEpoch(UUID userId) {
+        return jdbcTemplate.queryForObject("SELECT token_epoch FROM auth_schema.users WHERE id = ?", Long.class,
+                userId);
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.peterberghuis.auth.security;
+
+import io.github.peterberghuis.auth.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        encoder.destroy();
+    }
+
+    @Test
+    void shouldDelegateToWrappedEncoder() {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(false), 1, 1, Duration.ofSeconds(1), meterRegistry);
+
+        assertEquals("hash:secret", encoder.encode("secret"));
+        assertTrue(encoder.matches("secret", "hash:secret"));
+        assertFalse(encoder.matches("other", "hash:secret"));
+        assertEquals(3, meterRegistry.get("auth.password.hashing.wait").timer().count());
+    }
+
+    @Test
+    void shouldRejectWhenQueueIsFull() throws Exception {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(true), 1, 1, Duration.ofSeconds(2), meterRegistry);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+        while (meterRegistry.get("auth.password.hashing.queue.depth").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        PasswordHashingBusyException ex = assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("c"));
+        assertEquals(Duration.ofSeconds(2), ex.getRetryAfter());
+        assertEquals(1, meterRegistry.get("auth.password.hashing.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("hash:a", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash:b", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    private class BlockingEncoder implements PasswordEncoder {
+
+        private final boolean block;
+
+        BlockingEncoder(boolean block) {
+            this.block = block;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            if (block) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "hash:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+}
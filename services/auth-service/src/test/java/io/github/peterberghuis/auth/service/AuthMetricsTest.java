@@ -0,0 +1,34 @@
+package io.github.peterberghuis.auth.service;
+
+import io.github.peterberghuis.auth.exception.EmailAlreadyInUseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AuthMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AuthMetrics authMetrics = new AuthMetrics(meterRegistry);
+
+    @Test
+    void record_ShouldTagOperationWithOutcome() {
+        assertEquals("ok", authMetrics.record("login", () -> "ok"));
+        assertThrows(BadCredentialsException.class, () -> authMetrics.record("login", () -> {
+            throw new BadCredentialsException("Invalid email or password");
+        }));
+        assertThrows(EmailAlreadyInUseException.class, () -> authMetrics.record("register", () -> {
+            throw new EmailAlreadyInUseException("Email already in use");
+        }));
+
+        assertEquals(1, count("login", "success"));
+        assertEquals(1, count("login", "rejected"));
+        assertEquals(1, count("register", "conflict"));
+    }
+
+    private long count(String operation, String outcome) {
+        return meterRegistry.get("auth.operation").tag("operation", operation).tag("outcome", outcome).timer().count();
+    }
+}
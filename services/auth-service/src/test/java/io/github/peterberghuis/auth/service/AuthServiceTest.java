@@ -5,26 +5,43 @@ import io.github.peterberghuis.auth.dto.LoginRequest;
 import io.github.peterberghuis.auth.dto.RefreshRequest;
 import io.github.peterberghuis.auth.dto.RegisterRequest;
 import io.github.peterberghuis.auth.entity.*;
-import io.github.peterberghuis.auth.repository.OAuth2CodeRepository;
+import io.github.peterberghuis.auth.exception.EmailAlreadyInUseException;
 import io.github.peterberghuis.auth.repository.RefreshTokenRepository;
-import io.github.peterberghuis.auth.repository.UserAuthProviderRepository;
 import io.github.peterberghuis.auth.repository.UserRepository;
+import io.github.peterberghuis.auth.repository.UserWithRoles;
+import io.github.peterberghuis.common.id.IdGenerator;
+import io.github.peterberghuis.common.id.UuidV7Generator;
 import io.github.peterberghuis.security.JwtUtils;
+import io.github.peterberghuis.security.TokenEpochRegistry;
+import io.github.peterberghuis.security.TokenUser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.util.Base64;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -38,10 +55,7 @@ class AuthServiceTest {
     private RefreshTokenRepository refreshTokenRepository;
 
     @Mock
-    private UserAuthProviderRepository userAuthProviderRepository;
-
-    @Mock
-    private OAuth2CodeRepository oauth2CodeRepository;
+    private OAuth2CodeStore oauth2CodeStore;
 
     @Mock
     private PasswordEncoder passwordEncoder;
@@ -49,12 +63,25 @@ class AuthServiceTest {
     @Mock
     private JwtUtils jwtUtils;
 
+    @Mock
+    private TokenEpochRegistry tokenEpochRegistry;
+
+    @Spy
+    private IdGenerator idGenerator = new UuidV7Generator();
+
+    private final FakeTransactionManager transactionManager = new FakeTransactionManager();
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
     @InjectMocks
     private AuthService authService;
 
     @BeforeEach
     void setUp() {
         ReflectionTestUtils.setField(authService, "refreshExpiration", 604800000L);
+        ReflectionTestUtils.setField(authService, "userSnapshotCache",
+                new UserSnapshotCache(userRepository, 100, Duration.ofMinutes(1), new SimpleMeterRegistry()));
     }
 
     private String hashToken(String token) {
@@ -86,8 +113,9 @@ class AuthServiceTest {
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
         when(passwordEncoder.matches(password, user.getPasswordHash())).thenReturn(true);
-        when(jwtUtils.generateToken(anyString(), any())).thenReturn("access_token");
+        when(jwtUtils.generateToken(any(TokenUser.class), anyLong())).thenReturn("access_token");
         when(jwtUtils.generateRefreshToken(anyString())).thenReturn("refresh_token");
+        when(refreshTokenRepository.upsertRefreshToken(any(), any(), any(), any())).thenReturn(Optional.of(0L));
 
         // Act
         AuthResponse response = authService.login(loginRequest);
@@ -104,6 +132,140 @@ class AuthServiceTest {
         verify(refreshTokenRepository).upsertRefreshToken(any(UUID.class), eq(hashedToken), eq(user.getId()), any());
     }
 
+    @Test
+    void login_ShouldSignTheTokenEpochReadWithTheRefreshTokenUpsert() {
+        // Arrange: the cached snapshot cannot know about a logout on another instance, the upsert reads the row
+        String email = "test@example.com";
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail(email);
+        user.setPasswordHash("hashed_password");
+        user.setStatus(UserStatus.ACTIVE);
+        user.setCreatedAt(java.time.LocalDateTime.now());
+        user.setRoles(java.util.Set.of(io.github.peterberghuis.auth.entity.UserRole.USER));
+
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail(email);
+        loginRequest.setPassword("password");
+
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        when(passwordEncoder.matches("password", user.getPasswordHash())).thenReturn(true);
+        when(jwtUtils.generateRefreshToken(email)).thenReturn("refresh_token");
+        when(refreshTokenRepository.upsertRefreshToken(any(), any(), eq(user.getId()), any())).thenReturn(Optional.of(7L));
+        when(jwtUtils.generateToken(any(TokenUser.class), eq(7L))).thenReturn("access_token");
+
+        // Act
+        AuthResponse response = authService.login(loginRequest);
+
+        // Assert
+        assertEquals("access_token", response.getAccessToken());
+    }
+
+    @Test
+    void login_ShouldRehashPassword_WhenEncodingIsOutdated() {
+        // Arrange
+        String email = "test@example.com";
+        String password = "password";
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail(email);
+        user.setPasswordHash("$2a$10$legacy_hash");
+        user.setStatus(UserStatus.ACTIVE);
+        user.setCreatedAt(java.time.LocalDateTime.now());
+        user.setRoles(java.util.Set.of(io.github.peterberghuis.auth.entity.UserRole.USER));
+
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail(email);
+        loginRequest.setPassword(password);
+
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        when(passwordEncoder.matches(password, "$2a$10$legacy_hash")).thenReturn(true);
+        when(passwordEncoder.upgradeEncoding("$2a$10$legacy_hash")).thenReturn(true);
+        when(passwordEncoder.encode(password)).thenReturn("{bcrypt}$2a$12$new_hash");
+        when(jwtUtils.generateToken(any(TokenUser.class), anyLong())).thenReturn("access_token");
+        when(jwtUtils.generateRefreshToken(anyString())).thenReturn("refresh_token");
+        when(refreshTokenRepository.upsertRefreshToken(any(), any(), any(), any())).thenReturn(Optional.of(0L));
+
+        // Act
+        authService.login(loginRequest);
+
+        // Assert
+        verify(userRepository).updatePasswordHash(user.getId(), "{bcrypt}$2a$12$new_hash");
+    }
+
+    @Test
+    void login_ShouldHashOutsideTheTransactionAndWriteInsideIt() {
+        // Arrange
+        String email = "test@example.com";
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail(email);
+        user.setPasswordHash("$2a$10$legacy_hash");
+        user.setStatus(UserStatus.ACTIVE);
+        user.setCreatedAt(java.time.LocalDateTime.now());
+        user.setRoles(java.util.Set.of(io.github.peterberghuis.auth.entity.UserRole.USER));
+
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail(email);
+        loginRequest.setPassword("password");
+
+        when(userRepository.findByEmail(email)).thenAnswer(outsideTransaction(Optional.of(user)));
+        when(passwordEncoder.matches("password", "$2a$10$legacy_hash")).thenAnswer(outsideTransaction(true));
+        when(passwordEncoder.upgradeEncoding("$2a$10$legacy_hash")).thenReturn(true);
+        when(passwordEncoder.encode("password")).thenAnswer(outsideTransaction("{bcrypt}$2a$12$new_hash"));
+        when(userRepository.updatePasswordHash(user.getId(), "{bcrypt}$2a$12$new_hash"))
+                .thenAnswer(insideTransaction(1));
+        when(jwtUtils.generateRefreshToken(email)).thenReturn("refresh_token");
+        when(refreshTokenRepository.upsertRefreshToken(any(), any(), eq(user.getId()), any()))
+                .thenAnswer(insideTransaction(Optional.of(0L)));
+        when(jwtUtils.generateToken(any(TokenUser.class), anyLong())).thenReturn("access_token");
+
+        // Act
+        authService.login(loginRequest);
+
+        // Assert
+        assertEquals(1, transactionManager.begun);
+    }
+
+    @Test
+    void me_ShouldReadUserFromCache_WhenCalledRepeatedly() {
+        // Arrange
+        String email = "test@example.com";
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail(email);
+        user.setStatus(UserStatus.ACTIVE);
+        user.setCreatedAt(java.time.LocalDateTime.now());
+        user.setRoles(java.util.Set.of(io.github.peterberghuis.auth.entity.UserRole.USER));
+
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+
+        // Act
+        authService.me(email);
+        authService.me(email);
+
+        // Assert
+        verify(userRepository, times(1)).findByEmail(email);
+    }
+
+    @Test
+    void me_ShouldAnswerFromTokenClaims_WithoutLookup() {
+        // Arrange
+        ReflectionTestUtils.setField(authService, "meFromToken", true);
+        UUID userId = UUID.randomUUID();
+        java.time.Instant createdAt = java.time.Instant.parse("2026-01-18T21:47:00Z");
+        TokenUser principal = new TokenUser("test@example.com", userId, "ACTIVE", createdAt, java.util.List.of("USER"));
+
+        // Act
+        var response = authService.me(principal);
+
+        // Assert
+        assertEquals(userId, response.getId());
+        assertEquals("test@example.com", response.getEmail());
+        assertEquals(createdAt, response.getCreatedAt().toInstant());
+        verifyNoInteractions(userRepository);
+    }
+
     @Test
     void register_ShouldSaveUserAndLocalAuthProvider() {
         // Arrange
@@ -113,46 +275,106 @@ class AuthServiceTest {
         registerRequest.setEmail(email);
         registerRequest.setPassword(password);
 
-        when(userRepository.findByEmail(email)).thenReturn(Optional.empty());
         when(passwordEncoder.encode(password)).thenReturn("hashed_password");
-        when(jwtUtils.generateToken(anyString(), any())).thenReturn("access_token");
+        when(userRepository.insertLocalUser(any(UUID.class), eq(email), eq("hashed_password"), any(),
+                eq(UserRole.USER.bit()), any(UUID.class))).thenReturn(1);
+        when(jwtUtils.generateToken(any(TokenUser.class), anyLong())).thenReturn("access_token");
         when(jwtUtils.generateRefreshToken(anyString())).thenReturn("refresh_token");
-
-        // Mock userRepository.save to set ID and createdAt which are normally set by @PrePersist
-        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
-            User user = invocation.getArgument(0);
-            user.setId(UUID.randomUUID());
-            user.setCreatedAt(java.time.LocalDateTime.now());
-            return user;
-        });
+        when(refreshTokenRepository.upsertRefreshToken(any(), any(), any(), any())).thenReturn(Optional.of(0L));
 
         // Act
         AuthResponse response = authService.register(registerRequest);
 
         // Assert
         assertNotNull(response);
-        verify(userRepository).save(any(User.class));
-        verify(userAuthProviderRepository).save(argThat(provider ->
-                provider.getProvider().equals("local") &&
-                        provider.getProviderUserId().equals(email)
-        ));
+        assertEquals(email, response.getUser().getEmail());
+        // User, role and local provider go in with the one insert
+        verify(userRepository, never()).findByEmail(any());
+        verify(userRepository, never()).save(any());
     }
 
     @Test
-    void logout_ShouldDeleteRefreshToken() {
+    void register_ShouldHashOutsideTheTransactionAndWriteInsideIt() {
+        // Arrange
+        RegisterRequest registerRequest = new RegisterRequest();
+        registerRequest.setEmail("newuser@example.com");
+        registerRequest.setPassword("password");
+
+        when(passwordEncoder.encode("password")).thenAnswer(outsideTransaction("hashed_password"));
+        when(userRepository.insertLocalUser(any(), eq("newuser@example.com"), eq("hashed_password"), any(), anyInt(),
+                any())).thenAnswer(insideTransaction(1));
+        when(jwtUtils.generateRefreshToken(anyString())).thenReturn("refresh_token");
+        when(refreshTokenRepository.upsertRefreshToken(any(), any(), any(), any()))
+                .thenAnswer(insideTransaction(Optional.of(0L)));
+        when(jwtUtils.generateToken(any(TokenUser.class), anyLong())).thenReturn("access_token");
+
+        // Act
+        authService.register(registerRequest);
+
+        // Assert
+        assertEquals(1, transactionManager.begun);
+    }
+
+    @Test
+    void register_ShouldThrowEmailAlreadyInUse_WhenInsertConflicts() {
+        // Arrange
+        RegisterRequest registerRequest = new RegisterRequest();
+        registerRequest.setEmail("taken@example.com");
+        registerRequest.setPassword("password");
+
+        when(passwordEncoder.encode("password")).thenReturn("hashed_password");
+        when(userRepository.insertLocalUser(any(), eq("taken@example.com"), any(), any(), anyInt(), any()))
+                .thenReturn(0);
+
+        // Act & Assert
+        assertThrows(EmailAlreadyInUseException.class, () -> authService.register(registerRequest));
+        verify(jwtUtils, never()).generateRefreshToken(any());
+    }
+
+    @Test
+    void logout_ShouldDeleteRefreshTokenAndRevokeAccessTokens() {
         // Arrange
         String email = "test@example.com";
         User user = new User();
+        user.setId(UUID.randomUUID());
         user.setEmail(email);
+        user.setStatus(UserStatus.ACTIVE);
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        when(userRepository.revokeTokens(eq(user.getId()), any())).thenReturn(Optional.of(1L));
 
         // Act
         authService.logout(email);
 
         // Assert
-        verify(refreshTokenRepository).deleteByUser(user);
-        verify(refreshTokenRepository).flush();
+        verify(refreshTokenRepository).deleteByUserId(user.getId());
+        verify(tokenEpochRegistry).revoke(user.getId(), 1L);
+    }
+
+    @Test
+    void logout_ShouldRevokeLocallyOnlyAfterCommit() {
+        // Arrange
+        String email = "test@example.com";
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail(email);
+        user.setStatus(UserStatus.ACTIVE);
+
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        when(userRepository.revokeTokens(eq(user.getId()), any())).thenReturn(Optional.of(1L));
+
+        // Act & Assert: a rolled back logout leaves the registry alone
+        transactionTemplate.executeWithoutResult(status -> {
+            authService.logout(email);
+            status.setRollbackOnly();
+        });
+        verify(tokenEpochRegistry, never()).revoke(any(), anyLong());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            authService.logout(email);
+            verify(tokenEpochRegistry, never()).revoke(any(), anyLong());
+        });
+        verify(tokenEpochRegistry).revoke(user.getId(), 1L);
     }
 
     @Test
@@ -163,25 +385,26 @@ class AuthServiceTest {
         String newTokenString = "new_refresh_token";
         String hashedNewToken = hashToken(newTokenString);
         String email = "test@example.com";
+        UUID userId = UUID.randomUUID();
 
-        User user = new User();
-        user.setId(UUID.randomUUID());
-        user.setEmail(email);
-        user.setStatus(UserStatus.ACTIVE);
-        user.setCreatedAt(java.time.LocalDateTime.now());
-        user.setRoles(java.util.Set.of(io.github.peterberghuis.auth.entity.UserRole.USER));
-
-        RefreshToken oldToken = new RefreshToken();
-        oldToken.setToken(hashedOldToken);
-        oldToken.setUser(user);
-        oldToken.setExpiryDate(java.time.Instant.now().plusSeconds(600));
+        UserWithRoles rotation = mock(UserWithRoles.class);
+        when(rotation.getUserId()).thenReturn(userId);
+        when(rotation.getEmail()).thenReturn(email);
+        when(rotation.getStatus()).thenReturn("ACTIVE");
+        when(rotation.getCreatedAt()).thenReturn(java.time.LocalDateTime.now());
+        when(rotation.getRoles()).thenReturn(UserRole.USER.bit() | UserRole.ADMIN.bit());
+        when(rotation.getTokenEpoch()).thenReturn(4L);
 
         RefreshRequest refreshRequest = new RefreshRequest();
         refreshRequest.setRefreshToken(oldTokenString);
 
-        when(refreshTokenRepository.findByToken(hashedOldToken)).thenReturn(Optional.of(oldToken));
-        when(jwtUtils.generateToken(anyString(), any())).thenReturn("new_access_token");
+        when(jwtUtils.verifyRefreshToken(oldTokenString)).thenReturn(email);
         when(jwtUtils.generateRefreshToken(email)).thenReturn(newTokenString);
+        when(jwtUtils.generateToken(argThat((TokenUser user) -> user.email().equals(email) && user.id().equals(userId)),
+                eq(4L)))
+                .thenReturn("new_access_token");
+        when(refreshTokenRepository.rotate(eq(hashedOldToken), any(UUID.class), eq(hashedNewToken), any(), any()))
+                .thenReturn(Optional.of(rotation));
 
         // Act
         AuthResponse response = authService.refresh(refreshRequest);
@@ -191,10 +414,28 @@ class AuthServiceTest {
         assertEquals("new_access_token", response.getAccessToken());
         assertEquals(newTokenString, response.getRefreshToken());
         assertNotNull(response.getUser());
+        assertEquals(userId, response.getUser().getId());
         assertEquals(email, response.getUser().getEmail());
+        assertEquals(2, response.getUser().getRoles().size());
+
+        // Rotation is the only statement: no separate lookup or upsert
+        verify(refreshTokenRepository, never()).findByToken(any());
+        verify(refreshTokenRepository, never()).upsertRefreshToken(any(), any(), any(), any());
+    }
+
+    @Test
+    void refresh_ShouldRejectToken_WhenRotationMatchesNothing() {
+        // Arrange
+        RefreshRequest refreshRequest = new RefreshRequest();
+        refreshRequest.setRefreshToken("reused_refresh_token");
 
-        // Verify that tokens for user are upserted
-        verify(refreshTokenRepository).upsertRefreshToken(any(UUID.class), eq(hashedNewToken), eq(user.getId()), any());
+        when(jwtUtils.verifyRefreshToken("reused_refresh_token")).thenReturn("test@example.com");
+        when(jwtUtils.generateRefreshToken("test@example.com")).thenReturn("new_refresh_token");
+        when(refreshTokenRepository.rotate(any(), any(), any(), any(), any())).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(BadCredentialsException.class, () -> authService.refresh(refreshRequest));
+        verify(jwtUtils, never()).generateToken(any(TokenUser.class), anyLong());
     }
 
     @Test
@@ -202,10 +443,6 @@ class AuthServiceTest {
         // Arrange
         String code = "valid_code";
         String email = "test@example.com";
-        OAuth2Code oauth2Code = new OAuth2Code();
-        oauth2Code.setCode(code);
-        oauth2Code.setEmail(email);
-        oauth2Code.setExpiryDate(java.time.Instant.now().plusSeconds(60));
 
         User user = new User();
         user.setId(UUID.randomUUID());
@@ -214,10 +451,11 @@ class AuthServiceTest {
         user.setCreatedAt(java.time.LocalDateTime.now());
         user.setRoles(java.util.Set.of(io.github.peterberghuis.auth.entity.UserRole.USER));
 
-        when(oauth2CodeRepository.findByCode(code)).thenReturn(Optional.of(oauth2Code));
+        when(oauth2CodeStore.consume(code)).thenReturn(Optional.of(email));
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
-        when(jwtUtils.generateToken(anyString(), any())).thenReturn("access_token");
+        when(jwtUtils.generateToken(any(TokenUser.class), anyLong())).thenReturn("access_token");
         when(jwtUtils.generateRefreshToken(anyString())).thenReturn("refresh_token");
+        when(refreshTokenRepository.upsertRefreshToken(any(), any(), any(), any())).thenReturn(Optional.of(0L));
 
         // Act
         AuthResponse response = authService.exchangeCode(code);
@@ -225,31 +463,13 @@ class AuthServiceTest {
         // Assert
         assertNotNull(response);
         assertEquals("access_token", response.getAccessToken());
-        verify(oauth2CodeRepository).delete(oauth2Code);
-    }
-
-    @Test
-    void exchangeCode_ShouldThrowException_WhenCodeExpired() {
-        // Arrange
-        String code = "expired_code";
-        OAuth2Code oauth2Code = new OAuth2Code();
-        oauth2Code.setCode(code);
-        oauth2Code.setExpiryDate(java.time.Instant.now().minusSeconds(60));
-
-        when(oauth2CodeRepository.findByCode(code)).thenReturn(Optional.of(oauth2Code));
-
-        // Act & Assert
-        org.junit.jupiter.api.Assertions.assertThrows(org.springframework.security.authentication.BadCredentialsException.class, () -> {
-            authService.exchangeCode(code);
-        });
-        verify(oauth2CodeRepository).delete(oauth2Code);
     }
 
     @Test
     void exchangeCode_ShouldThrowException_WhenCodeNotFound() {
         // Arrange
         String code = "not_found_code";
-        when(oauth2CodeRepository.findByCode(code)).thenReturn(Optional.empty());
+        when(oauth2CodeStore.consume(code)).thenReturn(Optional.empty());
 
         // Act & Assert
         org.junit.jupiter.api.Assertions.assertThrows(org.springframework.security.authentication.BadCredentialsException.class, () -> {
@@ -258,60 +478,135 @@ class AuthServiceTest {
     }
 
     @Test
-    void loginOrRegisterOAuth2User_ShouldCreateNewUser_WhenUserDoesNotExist() {
+    void loginOrRegisterOAuth2User_ShouldLoginProvisionedUser() {
         // Arrange
         String email = "google-user@example.com";
-        String name = "Google User";
         String sub = "google-sub-123";
-
-        when(userRepository.findByEmail(email)).thenReturn(Optional.empty());
-        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
-            User user = invocation.getArgument(0);
-            user.setId(UUID.randomUUID());
-            user.setCreatedAt(java.time.LocalDateTime.now());
-            user.setRoles(java.util.Set.of(io.github.peterberghuis.auth.entity.UserRole.USER));
-            return user;
-        });
-        when(userAuthProviderRepository.findByProviderAndProviderUserId("google", sub)).thenReturn(Optional.empty());
-        when(userAuthProviderRepository.save(any(UserAuthProvider.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(jwtUtils.generateToken(anyString(), any())).thenReturn("access_token");
+        UserWithRoles account = mock(UserWithRoles.class);
+        when(account.getUserId()).thenReturn(UUID.randomUUID());
+        when(account.getEmail()).thenReturn(email);
+        when(account.getStatus()).thenReturn("ACTIVE");
+        when(account.getCreatedAt()).thenReturn(java.time.LocalDateTime.now());
+        when(account.getRoles()).thenReturn(UserRole.USER.bit());
+
+        when(userRepository.provisionOAuth2User(any(UUID.class), eq(email), any(), anyInt(), any(UUID.class),
+                eq("google"), eq(sub)))
+                .thenReturn(Optional.of(account));
+        when(jwtUtils.generateToken(any(TokenUser.class), anyLong())).thenReturn("access_token");
         when(jwtUtils.generateRefreshToken(anyString())).thenReturn("refresh_token");
+        when(refreshTokenRepository.upsertRefreshToken(any(), any(), any(), any())).thenReturn(Optional.of(0L));
 
         // Act
-        AuthResponse response = authService.loginOrRegisterOAuth2User(email, name, sub, "google");
+        AuthResponse response = authService.loginOrRegisterOAuth2User(email, "Google User", sub, "google");
 
         // Assert
         assertNotNull(response);
         assertEquals("access_token", response.getAccessToken());
-        verify(userRepository).save(any(User.class));
-        verify(userAuthProviderRepository).save(any(UserAuthProvider.class));
+        assertEquals(1, response.getUser().getRoles().size());
+        verify(userRepository, never()).findByEmail(any());
+        verify(userRepository, never()).save(any());
     }
 
     @Test
-    void loginOrRegisterOAuth2User_ShouldReturnExistingUser_WhenUserExists() {
+    void loginOrRegisterOAuth2User_ShouldRetryOnce_WhenConcurrentLoginInsertedUser() {
         // Arrange
         String email = "existing@example.com";
-        String name = "Existing User";
         String sub = "google-sub-456";
-        User user = new User();
-        user.setId(UUID.randomUUID());
-        user.setEmail(email);
-        user.setStatus(UserStatus.ACTIVE);
-        user.setCreatedAt(java.time.LocalDateTime.now());
-        user.setRoles(java.util.Set.of(io.github.peterberghuis.auth.entity.UserRole.USER));
+        UserWithRoles account = mock(UserWithRoles.class);
+        when(account.getUserId()).thenReturn(UUID.randomUUID());
+        when(account.getEmail()).thenReturn(email);
+        when(account.getStatus()).thenReturn("ACTIVE");
+        when(account.getCreatedAt()).thenReturn(java.time.LocalDateTime.now());
+        when(account.getRoles()).thenReturn(UserRole.USER.bit());
+
+        // Each attempt records the transaction it ran in
+        java.util.List<Integer> attemptTransactions = new java.util.ArrayList<>();
+        when(userRepository.provisionOAuth2User(any(UUID.class), eq(email), any(), anyInt(), any(UUID.class),
+                eq("google"), eq(sub)))
+                .thenAnswer(invocation -> {
+                    assertTrue(TransactionSynchronizationManager.isActualTransactionActive());
+                    attemptTransactions.add(transactionManager.begun);
+                    return attemptTransactions.size() == 1 ? Optional.empty() : Optional.of(account);
+                });
+        when(jwtUtils.generateToken(any(TokenUser.class), anyLong())).thenReturn("access_token");
+        when(jwtUtils.generateRefreshToken(anyString())).thenReturn("refresh_token");
+        when(refreshTokenRepository.upsertRefreshToken(any(), any(), any(), any())).thenReturn(Optional.of(0L));
 
-        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
-        when(userAuthProviderRepository.findByProviderAndProviderUserId("google", sub))
-                .thenReturn(Optional.of(new UserAuthProvider(UUID.randomUUID(), user, "google", sub)));
-        when(jwtUtils.generateToken(anyString(), any())).thenReturn("access_token");
+        // Act
+        AuthResponse response = authService.loginOrRegisterOAuth2User(email, "Existing User", sub, "google");
+
+        // Assert: the retry ran in a transaction of its own, whose snapshot can see the concurrent insert
+        assertEquals(email, response.getUser().getEmail());
+        assertEquals(java.util.List.of(1, 2), attemptTransactions);
+    }
+
+    @Test
+    void loginOrRegisterOAuth2User_ShouldRetryOnce_WhenFirstAttemptFailsToSerialize() {
+        // Arrange
+        String email = "existing@example.com";
+        String sub = "google-sub-456";
+        UserWithRoles account = mock(UserWithRoles.class);
+        when(account.getUserId()).thenReturn(UUID.randomUUID());
+        when(account.getEmail()).thenReturn(email);
+        when(account.getStatus()).thenReturn("ACTIVE");
+        when(account.getCreatedAt()).thenReturn(java.time.LocalDateTime.now());
+        when(account.getRoles()).thenReturn(UserRole.USER.bit());
+
+        when(userRepository.provisionOAuth2User(any(UUID.class), eq(email), any(), anyInt(), any(UUID.class),
+                eq("google"), eq(sub)))
+                .thenThrow(new CannotAcquireLockException("restart transaction: TransactionRetryWithProtoRefreshError"))
+                .thenReturn(Optional.of(account));
+        when(jwtUtils.generateToken(any(TokenUser.class), anyLong())).thenReturn("access_token");
         when(jwtUtils.generateRefreshToken(anyString())).thenReturn("refresh_token");
+        when(refreshTokenRepository.upsertRefreshToken(any(), any(), any(), any())).thenReturn(Optional.of(0L));
 
         // Act
-        AuthResponse response = authService.loginOrRegisterOAuth2User(email, name, sub, "google");
+        AuthResponse response = authService.loginOrRegisterOAuth2User(email, "Existing User", sub, "google");
 
         // Assert
-        assertNotNull(response);
-        assertEquals("access_token", response.getAccessToken());
-        verify(userRepository, never()).save(any(User.class));
+        assertEquals(email, response.getUser().getEmail());
+        verify(userRepository, times(2)).provisionOAuth2User(any(), any(), any(), anyInt(), any(), any(), any());
+    }
+
+    private static <T> org.mockito.stubbing.Answer<T> outsideTransaction(T result) {
+        return invocation -> {
+            assertFalse(TransactionSynchronizationManager.isActualTransactionActive(),
+                    invocation.getMethod().getName() + " ran inside a transaction");
+            return result;
+        };
+    }
+
+    private static <T> org.mockito.stubbing.Answer<T> insideTransaction(T result) {
+        return invocation -> {
+            assertTrue(TransactionSynchronizationManager.isActualTransactionActive(),
+                    invocation.getMethod().getName() + " ran outside a transaction");
+            return result;
+        };
+    }
+
+    /**
+     * Marks transactions active and runs synchronizations like a real manager, without a database.
+     */
+    private static class FakeTransactionManager extends AbstractPlatformTransactionManager {
+
+        private int begun;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            begun++;
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
     }
 }
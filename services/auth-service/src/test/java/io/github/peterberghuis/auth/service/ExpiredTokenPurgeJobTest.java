@@ -0,0 +1,67 @@
+package io.github.peterberghuis.auth.service;
+
+import io.github.peterberghuis.auth.config.PurgeProperties;
+import io.github.peterberghuis.auth.repository.JobLeaseRepository;
+import io.github.peterberghuis.auth.repository.OAuth2CodeRepository;
+import io.github.peterberghuis.auth.repository.RefreshTokenRepository;
+import io.github.peterberghuis.auth.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExpiredTokenPurgeJobTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private OAuth2CodeRepository oauth2CodeRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private JobLeaseRepository jobLeaseRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ExpiredTokenPurgeJob job;
+
+    @BeforeEach
+    void setUp() {
+        PurgeProperties properties = new PurgeProperties();
+        properties.setChunkSize(2);
+        properties.setMaxChunks(10);
+        job = new ExpiredTokenPurgeJob(refreshTokenRepository, oauth2CodeRepository, userRepository,
+                jobLeaseRepository, properties, meterRegistry);
+    }
+
+    @Test
+    void run_ShouldDeleteInChunksUntilShortChunk_WhenLeaseAcquired() {
+        when(jobLeaseRepository.tryAcquire(eq(ExpiredTokenPurgeJob.LEASE_NAME), anyString(), any(), any())).thenReturn(1);
+        when(refreshTokenRepository.deleteExpired(any(), eq(2))).thenReturn(2, 2, 1);
+        when(oauth2CodeRepository.deleteExpired(any(), eq(2))).thenReturn(0);
+
+        job.run();
+
+        verify(refreshTokenRepository, times(3)).deleteExpired(any(), eq(2));
+        verify(oauth2CodeRepository).deleteExpired(any(), eq(2));
+        assertEquals(5, meterRegistry.get("auth.purge.rows").tag("table", "refresh_tokens").counter().count());
+    }
+
+    @Test
+    void run_ShouldSkip_WhenAnotherInstanceHoldsLease() {
+        when(jobLeaseRepository.tryAcquire(eq(ExpiredTokenPurgeJob.LEASE_NAME), anyString(), any(), any())).thenReturn(0);
+
+        job.run();
+
+        verifyNoInteractions(refreshTokenRepository, oauth2CodeRepository, userRepository);
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.peterberghuis.auth.service;
+
+import io.github.peterberghuis.auth.config.OAuth2CodeProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryOAuth2CodeStoreTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final InMemoryOAuth2CodeStore store =
+            new InMemoryOAuth2CodeStore(new OAuth2CodeProperties(), new SimpleMeterRegistry(), nanos::get);
+
+    @Test
+    void consume_ShouldReturnEmailOnlyOnce() {
+        store.save("code", "user@example.com");
+
+        assertEquals(Optional.of("user@example.com"), store.consume("code"));
+        assertTrue(store.consume("code").isEmpty());
+    }
+
+    @Test
+    void consume_ShouldRejectExpiredCode() {
+        store.save("code", "user@example.com");
+        nanos.addAndGet(Duration.ofMinutes(5).plusSeconds(1).toNanos());
+
+        assertTrue(store.consume("code").isEmpty());
+    }
+
+    @Test
+    void consume_ShouldExpireEachCodeOnItsOwnDeadline() {
+        store.save("first", "first@example.com");
+        nanos.addAndGet(Duration.ofMinutes(3).toNanos());
+        store.save("second", "second@example.com");
+        nanos.addAndGet(Duration.ofMinutes(2).plusSeconds(1).toNanos());
+
+        assertTrue(store.consume("first").isEmpty());
+        assertEquals(Optional.of("second@example.com"), store.consume("second"));
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.peterberghuis.auth.service;
+
+import io.github.peterberghuis.auth.config.LoginThrottleProperties;
+import io.github.peterberghuis.auth.exception.LoginThrottledException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoginThrottleTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LoginThrottle throttle = new LoginThrottle(new LoginThrottleProperties(), meterRegistry, nanos::get);
+
+    @Test
+    void acquire_ShouldRejectEmailPastCapacityUntilRefilled() {
+        for (int i = 0; i < 5; i++) {
+            throttle.acquire("User@Example.com", "10.0.0." + i);
+        }
+
+        LoginThrottledException ex = assertThrows(LoginThrottledException.class,
+                () -> throttle.acquire("user@example.com", "10.0.0.9"));
+        assertEquals(Duration.ofMinutes(1), ex.getRetryAfter());
+        assertEquals(1, throttled("email"));
+
+        nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+        assertDoesNotThrow(() -> throttle.acquire("user@example.com", "10.0.0.9"));
+    }
+
+    @Test
+    void acquire_ShouldRejectAddressWithoutDrainingEmail() {
+        for (int i = 0; i < 30; i++) {
+            throttle.acquire("user" + i + "@example.com", "10.0.0.1");
+        }
+
+        assertThrows(LoginThrottledException.class, () -> throttle.acquire("victim@example.com", "10.0.0.1"));
+        assertEquals(1, throttled("ip"));
+
+        for (int i = 0; i < 5; i++) {
+            throttle.acquire("victim@example.com", "10.0.0." + (i + 2));
+        }
+    }
+
+    @Test
+    void acquire_ShouldChargeOnlyTheAddressWithoutEmail() {
+        for (int i = 0; i < 30; i++) {
+            throttle.acquire(null, "10.0.0.1");
+        }
+
+        assertThrows(LoginThrottledException.class, () -> throttle.acquire(null, "10.0.0.1"));
+        assertEquals(1, throttled("ip"));
+        assertEquals(0, throttled("email"));
+    }
+
+    private double throttled(String key) {
+        return meterRegistry.get("auth.login.throttled").tag("key", key).counter().count();
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.peterberghuis.profile.controller;
+
+import io.github.peterberghuis.profile.api.ProfileControllerApi;
+import io.github.peterberghuis.profile.dto.ProfileLookupRequest;
+import io.github.peterberghuis.profile.dto.ProfilePatchRequest;
+import io.github.peterberghuis.profile.dto.ProfileResponse;
+import io.github.peterberghuis.profile.dto.ProfileUpdateRequest;
+import io.github.peterberghuis.profile.service.ProfileService;
+import io.github.peterberghuis.profile.service.VersionedProfile;
+import io.github.peterberghuis.security.JwtAuthentication;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.SequenceWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequiredArgsConstructor
+public class ProfileController implements ProfileControllerApi {
+
+    // Browsers may keep the profile but must revalidate it, which is the cheap conditional read
+    private static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    private final ProfileService profileService;
+    private final JsonMapper jsonMapper;
+
+    @Override
+    public ResponseEntity<ProfileResponse> getMyProfile(String ifNoneMatch) {
+        return toResponse(profileService.get(currentUserId(), ifNoneMatch));
+    }
+
+    @Override
+    public ResponseEntity<ProfileResponse> replaceMyProfile(ProfileUpdateRequest profileUpdateRequest, String ifMatch) {
+        return toResponse(profileService.replace(currentUserId(), profileUpdateRequest, ifMatch));
+    }
+
+    @Override
+    public ResponseEntity<ProfileResponse> patchMyProfile(ProfilePatchRequest profilePatchRequest, String ifMatch) {
+        return toResponse(profileService.patch(currentUserId(), profilePatchRequest, ifMatch));
+    }
+
+    /**
+     * Runs the query once the response is committed and writes each profile as its row arrives, so the array is never
+     * built in memory.
+     */
+    @Override
+    public ResponseEntity<StreamingResponseBody> lookupProfiles(ProfileLookupRequest profileLookupRequest) {
+        List<UUID> userIds = profileLookupRequest.getUserIds();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> {
+                    try (SequenceWriter writer = jsonMapper.writer()
+                            .without(StreamWriteFeature.AUTO_CLOSE_TARGET)
+                            .writeValuesAsArray(out)) {
+                        profileService.forEachProfile(userIds, writer::write);
+                    }
+                });
+    }
+
+    private static ResponseEntity<ProfileResponse> toResponse(VersionedProfile result) {
+        if (result.isNotModified()) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(result.eTag()).cacheControl(CACHE_CONTROL).build();
+        }
+        return ResponseEntity.ok().eTag(result.eTag()).cacheControl(CACHE_CONTROL).body(result.profile());
+    }
+
+    private static UUID currentUserId() {
+        if (SecurityContextHolder.getContext().getAuthentication() instanceof JwtAuthentication authentication
+                && authentication.userId() != null) {
+            return authentication.userId();
+        }
+        throw new BadCredentialsException("Token carries no user id");
+    }
+}
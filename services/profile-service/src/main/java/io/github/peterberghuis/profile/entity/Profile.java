@@ -0,0 +1,39 @@
+package io.github.peterberghuis.profile.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "profiles", schema = "profile_schema")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Profile {
+
+    // The auth-service user id, taken from the access token
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Column(name = "display_name", length = 100)
+    private String displayName;
+
+    @Column(length = 1000)
+    private String bio;
+
+    @Column(name = "avatar_url", length = 2048)
+    private String avatarUrl;
+
+    // Bumped by every update, the profile's ETag
+    @Version
+    @Column(nullable = false)
+    private long version;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -0,0 +1,35 @@
+package io.github.peterberghuis.profile.exception;
+
+import io.github.peterberghuis.common.dto.ErrorResponse;
+import io.github.peterberghuis.common.exception.GlobalExceptionHandler;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.WebRequest;
+
+@RestControllerAdvice
+public class ProfileExceptionHandler extends GlobalExceptionHandler {
+
+    @ExceptionHandler(ProfileVersionMismatchException.class)
+    public ResponseEntity<ErrorResponse> handleProfileVersionMismatchException(ProfileVersionMismatchException ex, WebRequest request) {
+        return createErrorResponse(HttpStatus.PRECONDITION_FAILED, ex.getMessage(), request);
+    }
+
+    // Two updates of the same profile raced, the client can read it again and retry
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleObjectOptimisticLockingFailureException(ObjectOptimisticLockingFailureException ex, WebRequest request) {
+        return createErrorResponse(HttpStatus.CONFLICT, "Profile was changed concurrently", request);
+    }
+
+    @ExceptionHandler(MethodArgumentNotValidException.class)
+    public ResponseEntity<ErrorResponse> handleMethodArgumentNotValidException(MethodArgumentNotValidException ex, WebRequest request) {
+        String message = ex.getBindingResult().getFieldErrors().stream()
+                .map(error -> error.getField() + " " + error.getDefaultMessage())
+                .findFirst()
+                .orElse("Invalid request");
+        return createErrorResponse(HttpStatus.BAD_REQUEST, message, request);
+    }
+}
@@ -0,0 +1,11 @@
+package io.github.peterberghuis.profile.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class ProfileVersionMismatchException extends RuntimeException {
+    public ProfileVersionMismatchException(String message) {
+        super(message);
+    }
+}
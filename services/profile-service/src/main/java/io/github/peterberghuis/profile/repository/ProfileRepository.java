@@ -0,0 +1,52 @@
+package io.github.peterberghuis.profile.repository;
+
+import io.github.peterberghuis.profile.entity.Profile;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+@Repository
+public interface ProfileRepository extends JpaRepository<Profile, UUID> {
+
+    /**
+     * Returns the user's profile, inserting an empty one at version 0 first if there is none, in a single statement.
+     * Needs no surrounding transaction.
+     * <p>
+     * Returns empty when a concurrent statement inserted the profile after this one took its snapshot; running it again
+     * sees that row.
+     */
+    @Query(value = """
+            WITH inserted AS (
+                INSERT INTO profile_schema.profiles (user_id, version, updated_at)
+                VALUES (:userId, 0, :now)
+                ON CONFLICT (user_id) DO NOTHING
+                RETURNING *
+            )
+            SELECT * FROM inserted
+            UNION ALL
+            SELECT * FROM profile_schema.profiles WHERE user_id = :userId
+            """, nativeQuery = true)
+    Optional<Profile> findOrCreate(@Param("userId") UUID userId, @Param("now") Instant now);
+
+    /**
+     * The profiles of the given users, in one statement whatever the number of ids. Rows are fetched in batches, so
+     * consume the stream inside a transaction and close it.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "50"))
+    @Query(value = """
+            SELECT user_id AS "userId", display_name AS "displayName", bio AS "bio", avatar_url AS "avatarUrl",
+                   updated_at AS "updatedAt"
+            FROM profile_schema.profiles
+            WHERE user_id = ANY(:userIds)
+            """, nativeQuery = true)
+    Stream<ProfileSummary> streamByUserIds(@Param("userIds") UUID[] userIds);
+}
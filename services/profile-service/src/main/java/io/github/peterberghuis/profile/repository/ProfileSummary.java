@@ -0,0 +1,21 @@
+package io.github.peterberghuis.profile.repository;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Row of {@code profiles} as streamed by {@link ProfileRepository#streamByUserIds}. Not an entity, so the persistence
+ * context does not keep every row read.
+ */
+public interface ProfileSummary {
+
+    UUID getUserId();
+
+    String getDisplayName();
+
+    String getBio();
+
+    String getAvatarUrl();
+
+    Instant getUpdatedAt();
+}
@@ -0,0 +1,53 @@
+package io.github.peterberghuis.profile.service;
+
+import java.util.UUID;
+
+/**
+ * Strong ETags for profiles, {@code "<userId>.<version>"}. The user id keeps a client that switches accounts from
+ * getting a 304 for another user's profile at the same version.
+ */
+public final class ProfileETags {
+
+    private ProfileETags() {
+    }
+
+    public static String of(UUID userId, long version) {
+        return "\"" + userId + "." + version + "\"";
+    }
+
+    /**
+     * {@code If-None-Match}: weak comparison, so a {@code W/} tag a proxy derived from ours still matches.
+     */
+    public static boolean matchesIfNoneMatch(String ifNoneMatch, String eTag) {
+        return matches(ifNoneMatch, eTag, true);
+    }
+
+    /**
+     * {@code If-Match}: strong comparison, a {@code W/} tag never matches.
+     */
+    public static boolean matchesIfMatch(String ifMatch, String eTag) {
+        return matches(ifMatch, eTag, false);
+    }
+
+    private static boolean matches(String header, String eTag, boolean weak) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String tag = candidate.strip();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                if (!weak) {
+                    continue;
+                }
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
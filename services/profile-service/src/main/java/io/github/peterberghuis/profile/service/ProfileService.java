@@ -0,0 +1,144 @@
+package io.github.peterberghuis.profile.service;
+
+import io.github.peterberghuis.profile.dto.ProfilePatchRequest;
+import io.github.peterberghuis.profile.dto.ProfileResponse;
+import io.github.peterberghuis.profile.dto.ProfileUpdateRequest;
+import io.github.peterberghuis.profile.entity.Profile;
+import io.github.peterberghuis.profile.exception.ProfileVersionMismatchException;
+import io.github.peterberghuis.profile.repository.ProfileRepository;
+import io.github.peterberghuis.profile.repository.ProfileSummary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class ProfileService {
+
+    private final ProfileRepository profileRepository;
+    private final ProfileVersionIndex versionIndex;
+
+    /**
+     * Answers from the version index when {@code ifNoneMatch} holds the version this instance last saw, otherwise
+     * loads the profile, creating it on first access. Not transactional, so the index hit takes no connection.
+     */
+    public VersionedProfile get(UUID userId, String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            Long known = versionIndex.get(userId);
+            if (known != null && ProfileETags.matchesIfNoneMatch(ifNoneMatch, ProfileETags.of(userId, known))) {
+                return VersionedProfile.notModified(ProfileETags.of(userId, known));
+            }
+        }
+        Profile profile = findOrCreate(userId);
+        versionIndex.record(userId, profile.getVersion());
+        String eTag = ProfileETags.of(userId, profile.getVersion());
+        if (ProfileETags.matchesIfNoneMatch(ifNoneMatch, eTag)) {
+            return VersionedProfile.notModified(eTag);
+        }
+        return new VersionedProfile(eTag, toResponse(profile));
+    }
+
+    /**
+     * Hands each profile of the given users to {@code action} as its row is read, without collecting them. Users
+     * without a profile are skipped. The connection is held until the last row is handled.
+     */
+    @Transactional(readOnly = true)
+    public void forEachProfile(List<UUID> userIds, Consumer<ProfileResponse> action) {
+        try (Stream<ProfileSummary> rows = profileRepository.streamByUserIds(userIds.toArray(UUID[]::new))) {
+            rows.forEach(row -> action.accept(toResponse(row)));
+        }
+    }
+
+    /**
+     * Replaces every field, clearing those the request leaves out.
+     */
+    @Transactional
+    public VersionedProfile replace(UUID userId, ProfileUpdateRequest request, String ifMatch) {
+        return update(userId, ifMatch, profile -> {
+            profile.setDisplayName(emptyToNull(request.getDisplayName()));
+            profile.setBio(emptyToNull(request.getBio()));
+            profile.setAvatarUrl(emptyToNull(request.getAvatarUrl()));
+        });
+    }
+
+    /**
+     * Changes the fields the request sets, an empty string clearing the field.
+     */
+    @Transactional
+    public VersionedProfile patch(UUID userId, ProfilePatchRequest request, String ifMatch) {
+        return update(userId, ifMatch, profile -> {
+            if (request.getDisplayName() != null) {
+                profile.setDisplayName(emptyToNull(request.getDisplayName()));
+            }
+            if (request.getBio() != null) {
+                profile.setBio(emptyToNull(request.getBio()));
+            }
+            if (request.getAvatarUrl() != null) {
+                profile.setAvatarUrl(emptyToNull(request.getAvatarUrl()));
+            }
+        });
+    }
+
+    /**
+     * An update that changes nothing keeps the version, so clients' ETags stay valid. A concurrent update of the same
+     * profile fails the flush with an optimistic locking error.
+     */
+    private VersionedProfile update(UUID userId, String ifMatch, Consumer<Profile> changes) {
+        Profile profile = findOrCreate(userId);
+        if (ifMatch != null && !ProfileETags.matchesIfMatch(ifMatch, ProfileETags.of(userId, profile.getVersion()))) {
+            throw new ProfileVersionMismatchException("Profile has changed since it was read");
+        }
+        String displayName = profile.getDisplayName();
+        String bio = profile.getBio();
+        String avatarUrl = profile.getAvatarUrl();
+        changes.accept(profile);
+        if (!Objects.equals(displayName, profile.getDisplayName()) || !Objects.equals(bio, profile.getBio())
+                || !Objects.equals(avatarUrl, profile.getAvatarUrl())) {
+            // The column's precision, so the response matches later reads
+            profile.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+            profile = profileRepository.saveAndFlush(profile);
+        }
+        versionIndex.recordAfterCommit(userId, profile.getVersion());
+        return new VersionedProfile(ProfileETags.of(userId, profile.getVersion()), toResponse(profile));
+    }
+
+    private Profile findOrCreate(UUID userId) {
+        Instant now = Instant.now();
+        return profileRepository.findOrCreate(userId, now)
+                .or(() -> profileRepository.findOrCreate(userId, now))
+                .orElseThrow();
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static ProfileResponse toResponse(ProfileSummary row) {
+        ProfileResponse response = new ProfileResponse();
+        response.setUserId(row.getUserId());
+        response.setDisplayName(row.getDisplayName());
+        response.setBio(row.getBio());
+        response.setAvatarUrl(row.getAvatarUrl());
+        response.setUpdatedAt(row.getUpdatedAt().atOffset(ZoneOffset.UTC));
+        return response;
+    }
+
+    private static ProfileResponse toResponse(Profile profile) {
+        ProfileResponse response = new ProfileResponse();
+        response.setUserId(profile.getUserId());
+        response.setDisplayName(profile.getDisplayName());
+        response.setBio(profile.getBio());
+        response.setAvatarUrl(profile.getAvatarUrl());
+        response.setUpdatedAt(profile.getUpdatedAt().atOffset(ZoneOffset.UTC));
+        return response;
+    }
+}
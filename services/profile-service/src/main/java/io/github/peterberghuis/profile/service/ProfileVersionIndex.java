@@ -0,0 +1,65 @@
+package io.github.peterberghuis.profile.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * The last profile version this instance has seen per user, so conditional reads can be answered without loading the
+ * row. Versions only move forward: a late read or commit of an older version never replaces a newer one.
+ * <p>
+ * Only this instance's reads and writes are recorded, so entries expire after {@code profile.version-index.ttl} to
+ * bound how long another instance's write can go unseen.
+ */
+@Component
+public class ProfileVersionIndex {
+
+    private final Cache<UUID, Long> versions;
+
+    public ProfileVersionIndex(@Value("${profile.version-index.maximum-size:100000}") long maximumSize,
+                               @Value("${profile.version-index.ttl:30s}") Duration ttl,
+                               MeterRegistry meterRegistry) {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "profile_versions");
+    }
+
+    /**
+     * {@code null} when this instance has not seen the profile recently.
+     */
+    public Long get(UUID userId) {
+        return versions.getIfPresent(userId);
+    }
+
+    public void record(UUID userId, long version) {
+        versions.asMap().merge(userId, version, Math::max);
+    }
+
+    /**
+     * Records the version once the current transaction commits, so a rolled back write is never served as current.
+     * Records it right away outside a transaction.
+     */
+    public void recordAfterCommit(UUID userId, long version) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(userId, version);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(userId, version);
+            }
+        });
+    }
+}
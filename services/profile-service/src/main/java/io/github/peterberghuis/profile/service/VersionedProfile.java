@@ -0,0 +1,17 @@
+package io.github.peterberghuis.profile.service;
+
+import io.github.peterberghuis.profile.dto.ProfileResponse;
+
+/**
+ * A profile with its ETag. {@code profile} is {@code null} when the client's copy is still current.
+ */
+public record VersionedProfile(String eTag, ProfileResponse profile) {
+
+    public static VersionedProfile notModified(String eTag) {
+        return new VersionedProfile(eTag, null);
+    }
+
+    public boolean isNotModified() {
+        return profile == null;
+    }
+}
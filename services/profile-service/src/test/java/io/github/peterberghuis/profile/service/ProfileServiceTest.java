@@ -0,0 +1,177 @@
+package io.github.peterberghuis.profile.service;
+
+import io.github.peterberghuis.profile.dto.ProfilePatchRequest;
+import io.github.peterberghuis.profile.dto.ProfileResponse;
+import io.github.peterberghuis.profile.dto.ProfileUpdateRequest;
+import io.github.peterberghuis.profile.entity.Profile;
+import io.github.peterberghuis.profile.exception.ProfileVersionMismatchException;
+import io.github.peterberghuis.profile.repository.ProfileRepository;
+import io.github.peterberghuis.profile.repository.ProfileSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProfileServiceTest {
+
+    private static final UUID USER_ID = UUID.fromString("0190f5c2-7a3e-7000-8000-000000000001");
+
+    @Mock
+    private ProfileRepository profileRepository;
+
+    private ProfileVersionIndex versionIndex;
+    private ProfileService profileService;
+
+    @BeforeEach
+    void setUp() {
+        versionIndex = new ProfileVersionIndex(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        profileService = new ProfileService(profileRepository, versionIndex);
+    }
+
+    @Test
+    void getReturnsProfileWithETagAndRecordsVersion() {
+        when(profileRepository.findOrCreate(eq(USER_ID), any())).thenReturn(Optional.of(profile(3)));
+
+        VersionedProfile result = profileService.get(USER_ID, null);
+
+        assertEquals("\"" + USER_ID + ".3\"", result.eTag());
+        assertEquals("Tanuki", result.profile().getDisplayName());
+        assertEquals(3L, versionIndex.get(USER_ID));
+    }
+
+    @Test
+    void getAnswersMatchingIfNoneMatchFromIndexWithoutLoading() {
+        versionIndex.record(USER_ID, 3);
+
+        VersionedProfile result = profileService.get(USER_ID, "W/" + ProfileETags.of(USER_ID, 3));
+
+        assertTrue(result.isNotModified());
+        assertEquals(ProfileETags.of(USER_ID, 3), result.eTag());
+        verifyNoInteractions(profileRepository);
+    }
+
+    @Test
+    void getLoadsWhenIfNoneMatchIsStale() {
+        versionIndex.record(USER_ID, 3);
+        when(profileRepository.findOrCreate(eq(USER_ID), any())).thenReturn(Optional.of(profile(3)));
+
+        VersionedProfile result = profileService.get(USER_ID, ProfileETags.of(USER_ID, 2));
+
+        assertFalse(result.isNotModified());
+        assertEquals(ProfileETags.of(USER_ID, 3), result.eTag());
+    }
+
+    @Test
+    void getRetriesWhenConcurrentlyCreated() {
+        when(profileRepository.findOrCreate(eq(USER_ID), any()))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(profile(0)));
+
+        assertEquals(ProfileETags.of(USER_ID, 0), profileService.get(USER_ID, null).eTag());
+    }
+
+    @Test
+    void indexNeverMovesBackwards() {
+        versionIndex.record(USER_ID, 5);
+        versionIndex.record(USER_ID, 4);
+
+        assertEquals(5L, versionIndex.get(USER_ID));
+    }
+
+    @Test
+    void replaceClearsFieldsLeftOut() {
+        Profile profile = profile(1);
+        when(profileRepository.findOrCreate(eq(USER_ID), any())).thenReturn(Optional.of(profile));
+        when(profileRepository.saveAndFlush(profile)).thenAnswer(invocation -> {
+            profile.setVersion(2);
+            return profile;
+        });
+        ProfileUpdateRequest request = new ProfileUpdateRequest();
+        request.setBio("Hello");
+
+        VersionedProfile result = profileService.replace(USER_ID, request, null);
+
+        assertNull(result.profile().getDisplayName());
+        assertEquals("Hello", result.profile().getBio());
+        assertEquals(ProfileETags.of(USER_ID, 2), result.eTag());
+        assertEquals(2L, versionIndex.get(USER_ID));
+    }
+
+    @Test
+    void patchKeepsFieldsLeftOutAndClearsEmptyOnes() {
+        Profile profile = profile(1);
+        profile.setBio("Old");
+        when(profileRepository.findOrCreate(eq(USER_ID), any())).thenReturn(Optional.of(profile));
+        when(profileRepository.saveAndFlush(profile)).thenReturn(profile);
+        ProfilePatchRequest request = new ProfilePatchRequest();
+        request.setBio("");
+
+        VersionedProfile result = profileService.patch(USER_ID, request, null);
+
+        assertEquals("Tanuki", result.profile().getDisplayName());
+        assertNull(result.profile().getBio());
+    }
+
+    @Test
+    void updateWithoutChangesKeepsVersion() {
+        when(profileRepository.findOrCreate(eq(USER_ID), any())).thenReturn(Optional.of(profile(1)));
+        ProfilePatchRequest request = new ProfilePatchRequest();
+        request.setDisplayName("Tanuki");
+
+        VersionedProfile result = profileService.patch(USER_ID, request, ProfileETags.of(USER_ID, 1));
+
+        assertEquals(ProfileETags.of(USER_ID, 1), result.eTag());
+        verify(profileRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void updateRejectsStaleIfMatch() {
+        when(profileRepository.findOrCreate(eq(USER_ID), any())).thenReturn(Optional.of(profile(2)));
+        ProfilePatchRequest request = new ProfilePatchRequest();
+        request.setDisplayName("Other");
+
+        assertThrows(ProfileVersionMismatchException.class,
+                () -> profileService.patch(USER_ID, request, ProfileETags.of(USER_ID, 1)));
+        assertThrows(ProfileVersionMismatchException.class,
+                () -> profileService.patch(USER_ID, request, "W/" + ProfileETags.of(USER_ID, 2)));
+        verify(profileRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void forEachProfileHandsOverStreamedRowsInOneQuery() {
+        UUID other = UUID.fromString("0190f5c2-7a3e-7000-8000-000000000002");
+        ProfileSummary row = mock(ProfileSummary.class);
+        when(row.getUserId()).thenReturn(USER_ID);
+        when(row.getDisplayName()).thenReturn("Tanuki");
+        when(row.getUpdatedAt()).thenReturn(Instant.parse("2026-10-01T12:00:00Z"));
+        when(profileRepository.streamByUserIds(new UUID[]{USER_ID, other})).thenReturn(Stream.of(row));
+        List<ProfileResponse> handled = new ArrayList<>();
+
+        profileService.forEachProfile(List.of(USER_ID, other), handled::add);
+
+        assertEquals(1, handled.size());
+        assertEquals(USER_ID, handled.getFirst().getUserId());
+        assertEquals("Tanuki", handled.getFirst().getDisplayName());
+        verify(profileRepository).streamByUserIds(any());
+    }
+
+    private static Profile profile(long version) {
+        return new Profile(USER_ID, "Tanuki", null, null, version, Instant.parse("2026-10-01T12:00:00Z"));
+    }
+}